@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Random;
+
+/** Scratch repositories for the benchmarks. They are made in the current
+ *  directory, which the run target of the Makefile sets to a scratch
+ *  directory; working files are only ever written below FILES.
+ *  @author Zixian Zang
+ */
+class BenchRepo {
+
+    /** Directory of the working files of benchmark repositories. */
+    static final String FILES = "bench-files";
+
+    /** A stream discarding what commands print. */
+    static final PrintStream NULL_OUT =
+        new PrintStream(OutputStream.nullOutputStream());
+
+    /** Return a new, empty repository in the current directory, after
+     *  deleting any earlier one and its working files. */
+    static CommitTree fresh() {
+        clean();
+        Main.init();
+        return Main.getrepo();
+    }
+
+    /** Delete the repository and the working files of the benchmarks. */
+    static void clean() {
+        delete(new File(Utils.LOCAL_REPO));
+        delete(new File(FILES));
+    }
+
+    /** Delete F and, if it is a directory, everything below it. */
+    static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+
+    /** Return N bytes drawn from a generator seeded with SEED. */
+    static byte[] randomBytes(int n, long seed) {
+        byte[] result = new byte[n];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Return the path of working file number I of a tree of files
+     *  spread over directories of at most PERDIR files each. */
+    static String filePath(int i, int perDir) {
+        return FILES + Tree.SEP + "d" + (i / perDir) + Tree.SEP
+            + "f" + i + ".txt";
+    }
+
+    /** Write N working files of SIZE bytes each, spread over directories
+     *  of PERDIR files, and return the map from their paths to the IDs
+     *  of their stored blobs. */
+    static HashMap<String, String> writeFiles(int n, int size, int perDir) {
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < n; i += 1) {
+            String path = filePath(i, perDir);
+            Blob blob = new Blob(randomBytes(size, i));
+            blob.writeIntoDirectory(path);
+            blob.serializeBlob();
+            result.put(path, blob.blobShaID());
+        }
+        return result;
+    }
+
+    /** Make a commit of REPO on its current branch that tracks exactly
+     *  FILES, a map from paths to blob IDs, and return its ID. */
+    static String commitFiles(CommitTree repo, HashMap<String, String> files,
+                              String msg) {
+        Commit c = new Commit(msg, repo.curHeadCommit(), null, files,
+                              "Thu Jan 1 00:00:00 1970 +0000");
+        repo.allCommits().add(ObjectId.parse(c.commitID()));
+        repo.setBranchHead(repo.curBranch(), c.commitID());
+        return c.commitID();
+    }
+}
@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Java serialization against the encoding of Codec, in memory, for
+ *  each kind of stored object. The sizes of both forms of each object
+ *  are printed when it is set up.
+ *  @author Zixian Zang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+
+    /** Form the object is written in: "java" or "codec". */
+    @Param({"java", "codec"})
+    public String format;
+
+    /** Kind of object: "commit", "tree", "blob" or "repo". */
+    @Param({"commit", "tree", "blob", "repo"})
+    public String kind;
+
+    /** Number of files tracked by the repository, and bytes in the
+     *  blob. */
+    @Param({"100", "10000"})
+    public int size;
+
+    /** The object. */
+    private Serializable _object;
+
+    /** The object written in FORMAT. */
+    private byte[] _bytes;
+
+    /** Build a repository whose head tracks SIZE files in one directory,
+     *  pick the object of KIND and write it in FORMAT. */
+    @Setup
+    public void setup() throws IOException {
+        CommitTree repo = BenchRepo.fresh();
+        HashMap<String, String> files = new HashMap<>();
+        for (int i = 0; i < size; i += 1) {
+            files.put("f" + i + ".txt", Utils.sha1("blob" + i));
+        }
+        BenchRepo.commitFiles(repo, files, "many files");
+        Commit commit = Utils.getCommit(repo.curHeadCommit());
+        switch (kind) {
+        case "commit":
+            _object = commit;
+            break;
+        case "tree":
+            _object = Utils.getTree(commit.tree());
+            break;
+        case "blob":
+            _object = new Blob(BenchRepo.randomBytes(size, 2));
+            break;
+        default:
+            _object = repo;
+        }
+        _bytes = encode();
+        System.out.printf("%n%s %s of %d: %d bytes as java, %d as codec%n",
+                          kind, _object.getClass().getSimpleName(), size,
+                          java(_object).length, Codec.encode(_object).length);
+    }
+
+    /** Remove the repository. */
+    @TearDown
+    public void tearDown() {
+        BenchRepo.clean();
+    }
+
+    /** Write the object in FORMAT. */
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return format.equals("java") ? java(_object) : Codec.encode(_object);
+    }
+
+    /** Read the object back from FORMAT. */
+    @Benchmark
+    public Object decode() throws IOException, ClassNotFoundException {
+        if (format.equals("java")) {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(_bytes));
+            return in.readObject();
+        }
+        return Codec.decode(_bytes, Serializable.class);
+    }
+
+    /** Return OBJ written by Java serialization. */
+    private static byte[] java(Serializable obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
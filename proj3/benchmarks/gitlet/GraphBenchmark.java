@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Cost of walking the commit graph: finding split points and all
+ *  ancestors of a commit, on synthetic histories of two long branches
+ *  that fork from a shared history and merge back into each other from
+ *  time to time, and finding the split points of master with a number
+ *  of short feature branches, one at a time or in one walk.
+ *  @author Zixian Zang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GraphBenchmark {
+
+    /** Number of commits on each branch since the fork. */
+    @Param({"100", "2000"})
+    public int depth;
+
+    /** One commit in MERGEEVERY on master merges in the other branch;
+     *  0 for none. */
+    @Param({"0", "10"})
+    public int mergeEvery;
+
+    /** Number of feature branches forked from master. */
+    private static final int FEATURES = 16;
+
+    /** The repository. */
+    private CommitTree _repo;
+
+    /** Names of the feature branches. */
+    private final ArrayList<String> _features = new ArrayList<>();
+
+    /** Heads of master and then of the feature branches. */
+    private final ArrayList<String> _heads = new ArrayList<>();
+
+    /** Build the history. Every commit shares the same empty tree, so
+     *  the commits themselves are the only objects read. */
+    @Setup
+    public void setup() {
+        _repo = BenchRepo.fresh();
+        String tree = Tree.build(new HashMap<>());
+        String base = _repo.curHeadCommit();
+        for (int i = 0; i < depth; i += 1) {
+            base = add(base, null, tree, "base" + i);
+        }
+        String master = base, other = base;
+        Random random = new Random(4);
+        for (int i = 0; i < depth; i += 1) {
+            other = add(other, null, tree, "other" + i);
+            String merged = null;
+            if (mergeEvery > 0 && random.nextInt(mergeEvery) == 0) {
+                merged = other;
+            }
+            master = add(master, merged, tree, "master" + i);
+        }
+        other = add(other, null, tree, "other tip");
+        _repo.setBranchHead("master", master);
+        _repo.setBranchHead("other", other);
+        _heads.add(master);
+        for (int k = 0; k < FEATURES; k += 1) {
+            String feature = master;
+            for (int back = random.nextInt(depth); back > 0; back -= 1) {
+                feature = Utils.getCommit(feature).parent1();
+            }
+            for (int i = 0; i < 3; i += 1) {
+                feature = add(feature, null, tree, "feature" + k + "." + i);
+            }
+            _features.add("feature" + k);
+            _repo.setBranchHead("feature" + k, feature);
+            _heads.add(feature);
+        }
+    }
+
+    /** Store a commit with parents P1 and P2, tree TREE and message MSG,
+     *  and return its ID. */
+    private String add(String p1, String p2, String tree, String msg) {
+        Commit c = new Commit(msg, p1, p2, tree,
+                              "Thu Jan 1 00:00:00 1970 +0000");
+        _repo.allCommits().add(ObjectId.parse(c.commitID()));
+        return c.commitID();
+    }
+
+    /** Remove the repository. */
+    @TearDown
+    public void tearDown() {
+        BenchRepo.clean();
+    }
+
+    /** Find the split point of master and the other branch. */
+    @Benchmark
+    public String findSplitPoint() {
+        return _repo.findSplitPoint("other");
+    }
+
+    /** Find the split points of master with each feature branch, one
+     *  branch at a time. */
+    @Benchmark
+    public int featureSplitPoints() {
+        int found = 0;
+        for (String feature : _features) {
+            found += _repo.findSplitPoint(feature).length();
+        }
+        return found;
+    }
+
+    /** Find the split points of master with each feature branch in one
+     *  walk, as an octopus merge does. */
+    @Benchmark
+    public String featureMergeBases() {
+        return new MergeBases(_heads, "features").base(FEATURES);
+    }
+
+    /** Collect every ancestor of the head of master. */
+    @Benchmark
+    public int allAncestors() {
+        return _repo.allAncestors(_repo.curHeadCommit()).size();
+    }
+}
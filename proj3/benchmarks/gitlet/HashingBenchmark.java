@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Cost of Utils.sha1 on byte arrays and on strings of several sizes,
+ *  of SHA-256 against it, of hex encoding, and of hashing a file as
+ *  blob IDs of working files are computed.
+ *  @author Zixian Zang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HashingBenchmark {
+
+    /** Number of bytes hashed. */
+    @Param({"64", "4096", "1048576"})
+    public int size;
+
+    /** Bytes hashed. */
+    private byte[] _bytes;
+
+    /** String of about SIZE characters hashed. */
+    private String _text;
+
+    /** A file of SIZE bytes. */
+    private File _file;
+
+    /** A SHA-256 digest, reused as Utils reuses its digests. */
+    private MessageDigest _sha256;
+
+    /** A SHA-1 digest to encode in hex. */
+    private byte[] _digest;
+
+    /** Prepare the input. */
+    @Setup
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        _bytes = BenchRepo.randomBytes(size, 1);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < size) {
+            text.append("0123456789abcdef");
+        }
+        _text = text.substring(0, size);
+        _sha256 = MessageDigest.getInstance("SHA-256");
+        _digest = MessageDigest.getInstance("SHA-1").digest(_bytes);
+        _file = File.createTempFile("hashing", ".bin");
+        Utils.writeContents(_file, _bytes);
+    }
+
+    /** Remove the file. */
+    @TearDown
+    public void tearDown() {
+        _file.delete();
+    }
+
+    /** Hash a byte array. */
+    @Benchmark
+    public String sha1Bytes() {
+        return Utils.sha1(_bytes);
+    }
+
+    /** Hash several strings, as commit and tree IDs are computed. */
+    @Benchmark
+    public String sha1Strings() {
+        return Utils.sha1("commit", _text, "parent");
+    }
+
+    /** Hash a byte array by SHA-256, for repositories that name objects
+     *  by it. */
+    @Benchmark
+    public String sha256Bytes() {
+        return Utils.toHex(_sha256.digest(_bytes));
+    }
+
+    /** Encode a SHA-1 digest in hexadecimal. */
+    @Benchmark
+    public String toHex() {
+        return Utils.toHex(_digest);
+    }
+
+    /** Compute the blob ID of a file of SIZE bytes, streaming it. */
+    @Benchmark
+    public String blobIdOfFile() {
+        return Blob.contentID(_file);
+    }
+}
@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Cost of making blobs from memory and from working files, and of
+ *  making commits that track many files. Every object made is stored,
+ *  as it is by the commands; objects that are already stored are not
+ *  written again.
+ *  @author Zixian Zang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObjectBenchmark {
+
+    /** Number of tracked files, and bytes in the blob. */
+    @Param({"100", "10000"})
+    public int size;
+
+    /** Files tracked by the parent commit, spread over directories of
+     *  100 files each. */
+    private HashMap<String, String> _files;
+
+    /** Content of the blob. */
+    private byte[] _content;
+
+    /** Path of a working file of SIZE bytes. */
+    private String _path;
+
+    /** The repository. */
+    private CommitTree _repo;
+
+    /** Number of commits made so far, to give each a different time. */
+    private long _count;
+
+    /** Build a repository with a head commit tracking SIZE files. */
+    @Setup
+    public void setup() {
+        _repo = BenchRepo.fresh();
+        _files = new HashMap<>();
+        for (int i = 0; i < size; i += 1) {
+            _files.put(BenchRepo.filePath(i, 100), Utils.sha1("blob" + i));
+        }
+        BenchRepo.commitFiles(_repo, _files, "parent");
+        _content = BenchRepo.randomBytes(size, 3);
+        _path = BenchRepo.filePath(size, 100);
+        new Blob(_content).writeIntoDirectory(_path);
+    }
+
+    /** Remove the repository. */
+    @TearDown
+    public void tearDown() {
+        BenchRepo.clean();
+    }
+
+    /** Make a blob of SIZE bytes held in memory. */
+    @Benchmark
+    public String blobFromBytes() {
+        return new Blob(_content).blobShaID();
+    }
+
+    /** Make a blob from a working file of SIZE bytes. */
+    @Benchmark
+    public String blobFromFile() {
+        return new Blob(_path).blobShaID();
+    }
+
+    /** Make a commit tracking SIZE files from a full manifest, as the
+     *  first commit of a repository does. */
+    @Benchmark
+    public String commitFromManifest() {
+        _count += 1;
+        return new Commit("msg", null, null, _files,
+                          Long.toString(_count)).commitID();
+    }
+
+    /** Make a commit that changes one of SIZE tracked files of its
+     *  parent, as the commit command does. */
+    @Benchmark
+    public String commitOneChange() {
+        _count += 1;
+        HashMap<String, String> changes = new HashMap<>();
+        changes.put(BenchRepo.filePath((int) (_count % size), 100),
+                    Utils.sha1("changed" + _count));
+        Commit parent = Utils.getCommit(_repo.curHeadCommit());
+        String tree = Tree.apply(parent.tree(), changes);
+        return new Commit("msg", parent.commitID(), null, tree,
+                          Long.toString(_count)).commitID();
+    }
+}
@@ -0,0 +1,154 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Random;
+
+/** Builds synthetic repositories of a given shape in the current
+ *  directory by driving a CommitTree directly, as the commands do but
+ *  without reloading it for each step. The working files are numbered,
+ *  spread over directories of PER_DIR files, and filled with random
+ *  bytes. After an initial commit of all files, commits are made in runs
+ *  of RUN on the branches in turn; each branch only changes the files
+ *  whose number is its own modulo the number of branches, so that its
+ *  merges into master never conflict.
+ *  @author Zixian Zang
+ */
+class RepoGenerator {
+
+    /** Files per directory. */
+    static final int PER_DIR = 100;
+
+    /** Commits made on a branch before moving on to the next. */
+    static final int RUN = 10;
+
+    /** Number of working files. */
+    int files = 1000;
+
+    /** Bytes in each file. */
+    int fileSize = 1024;
+
+    /** Number of commits after the initial one. */
+    int commits = 100;
+
+    /** Number of branches, master included. */
+    int branches = 1;
+
+    /** One run of commits on a branch other than master in MERGEEVERY
+     *  is merged into master afterwards; 0 for no merges. */
+    int mergeEvery = 0;
+
+    /** Files changed by each commit. */
+    int changesPerCommit = 1;
+
+    /** Seed of the random contents. */
+    long seed = 61;
+
+    /** Return the name of branch number K; 0 is master. */
+    static String branchName(int k) {
+        return k == 0 ? "master" : "branch" + k;
+    }
+
+    /** Return the path of working file number I. */
+    static String path(int i) {
+        return BenchRepo.filePath(i, PER_DIR);
+    }
+
+    /** Replace any repository in the current directory by a new one of
+     *  my shape, with master checked out, and return it. */
+    CommitTree generate() {
+        _random = new Random(seed);
+        CommitTree repo = BenchRepo.fresh();
+        PrintStream out = System.out;
+        System.setOut(BenchRepo.NULL_OUT);
+        try {
+            for (int i = 0; i < files; i += 1) {
+                write(repo, i);
+            }
+            commit(repo, "initial files");
+            for (int k = 1; k < branches; k += 1) {
+                repo.branch(branchName(k));
+            }
+            int runs = 0;
+            for (int made = 0; made < commits; runs += 1) {
+                int k = runs % branches;
+                checkout(repo, branchName(k));
+                for (int c = 0; c < RUN && made < commits; c += 1) {
+                    for (int j = 0; j < changesPerCommit; j += 1) {
+                        write(repo, pick(k));
+                    }
+                    commit(repo, "commit " + made);
+                    made += 1;
+                }
+                if (k != 0 && mergeEvery > 0 && runs % mergeEvery == 0) {
+                    checkout(repo, "master");
+                    repo.preMergeCheck(branchName(k));
+                    repo.clearStage();
+                }
+            }
+            checkout(repo, "master");
+        } finally {
+            System.setOut(out);
+        }
+        repo.serializeTree();
+        return repo;
+    }
+
+    /** Return the number of a random file that branch K may change. */
+    int pick(int k) {
+        int owned = (files - k + branches - 1) / branches;
+        if (owned <= 0) {
+            return k % files;
+        }
+        return k + branches * _random.nextInt(owned);
+    }
+
+    /** Give working file number I new random contents and stage it in
+     *  REPO. */
+    void write(CommitTree repo, int i) {
+        byte[] content = new byte[fileSize];
+        _random.nextBytes(content);
+        Blob blob = new Blob(content);
+        blob.writeIntoDirectory(path(i));
+        blob.serializeBlob();
+        repo.addArea().put(path(i), blob.blobShaID());
+    }
+
+    /** Commit the stage of REPO with message MSG. */
+    private static void commit(CommitTree repo, String msg) {
+        repo.commit(msg);
+        repo.clearStage();
+    }
+
+    /** Check out BRANCH in REPO unless it is current. */
+    private static void checkout(CommitTree repo, String branch) {
+        if (!branch.equals(repo.curBranch())) {
+            repo.checkoutBranch(branch);
+        }
+    }
+
+    /** Source of contents and of the files changed. */
+    private Random _random;
+
+    /** Return a summary of my shape. */
+    @Override
+    public String toString() {
+        return String.format("files=%d fileSize=%d commits=%d branches=%d "
+                             + "mergeEvery=%d changesPerCommit=%d",
+                             files, fileSize, commits, branches, mergeEvery,
+                             changesPerCommit);
+    }
+
+    /** Return a map from the names of my numeric settings to their
+     *  values. */
+    HashMap<String, Long> settings() {
+        HashMap<String, Long> result = new HashMap<>();
+        result.put("files", (long) files);
+        result.put("fileSize", (long) fileSize);
+        result.put("commits", (long) commits);
+        result.put("branches", (long) branches);
+        result.put("mergeEvery", (long) mergeEvery);
+        result.put("changesPerCommit", (long) changesPerCommit);
+        return result;
+    }
+}
@@ -0,0 +1,305 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** End-to-end timing of the commands on synthetic repositories of
+ *  growing size. For each scale point, a repository is generated by a
+ *  RepoGenerator, and then every sample runs add, commit, status, log,
+ *  log of the file just committed, checkout (to a side branch and back),
+ *  merge (of the side branch), push and fetch through Main.main, so
+ *  that each time includes loading and saving the repository as the
+ *  real command does. Push goes to a copy of the repository made before
+ *  the first sample. Fetch copies the whole master branch into an empty
+ *  repository, as a first fetch or a clone would. The latency
+ *  percentiles and the peak heap of each command are printed, and
+ *  optionally written as JSON.
+ *
+ *  Arguments are NAME=VALUE pairs. The settings of RepoGenerator
+ *  (files, fileSize, commits, branches, mergeEvery, changesPerCommit)
+ *  may be given; files and commits take comma-separated lists, whose
+ *  every combination is a scale point. samples=N sets the samples per
+ *  command, and json=FILE names the file for the results.
+ *
+ *  Runs in the current directory and deletes any repository there.
+ *  @author Zixian Zang
+ */
+public class ScaleBenchmark {
+
+    /** Name of the side branch that is checked out and merged. */
+    static final String SIDE = "side";
+
+    /** Path of the repository pushed to. */
+    static final String PUSH_REMOTE = "remote" + File.separator + "push"
+        + File.separator + Utils.LOCAL_REPO;
+
+    /** Path the repository is moved to while it is fetched from. */
+    static final String FETCH_REMOTE = "remote" + File.separator + "fetch"
+        + File.separator + Utils.LOCAL_REPO;
+
+    /** Run the scale points described by ARGS. */
+    public static void main(String... args) throws IOException {
+        LinkedHashMap<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("bad argument: " + arg);
+            }
+            opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int samples = Integer.parseInt(opts.getOrDefault("samples", "20"));
+        String json = opts.get("json");
+        StringBuilder results = new StringBuilder("[");
+        for (int files : ints(opts.getOrDefault("files", "1000"))) {
+            for (int commits : ints(opts.getOrDefault("commits", "100"))) {
+                RepoGenerator gen = new RepoGenerator();
+                gen.files = files;
+                gen.commits = commits;
+                gen.fileSize = intOpt(opts, "fileSize", gen.fileSize);
+                gen.branches = intOpt(opts, "branches", gen.branches);
+                gen.mergeEvery = intOpt(opts, "mergeEvery", gen.mergeEvery);
+                gen.changesPerCommit = intOpt(opts, "changesPerCommit",
+                                              gen.changesPerCommit);
+                ScaleBenchmark point = new ScaleBenchmark(gen, samples);
+                point.run();
+                point.report(System.out);
+                if (results.length() > 1) {
+                    results.append(",");
+                }
+                results.append(point.toJSON());
+            }
+        }
+        BenchRepo.clean();
+        BenchRepo.delete(new File("remote"));
+        if (json != null) {
+            Utils.writeContents(new File(json), results.append("]\n")
+                                .toString());
+        }
+    }
+
+    /** Return the integers in the comma-separated list LIST. */
+    private static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim)
+            .mapToInt(Integer::parseInt).toArray();
+    }
+
+    /** Return the integer option NAME of OPTS, or DFLT if it is absent. */
+    private static int intOpt(Map<String, String> opts, String name,
+                              int dflt) {
+        String value = opts.get(name);
+        return value == null ? dflt : Integer.parseInt(value);
+    }
+
+    /** A scale point of repositories made by GEN, measured SAMPLES times
+     *  per command. */
+    ScaleBenchmark(RepoGenerator gen, int samples) {
+        _gen = gen;
+        _samples = samples;
+        for (String command : COMMANDS) {
+            _times.put(command, new long[samples]);
+            _heaps.put(command, 0L);
+        }
+    }
+
+    /** Generate the repository and take all samples. */
+    void run() throws IOException {
+        _gen.generate();
+        BenchRepo.delete(new File("remote"));
+        copyDirectory(Path.of(Utils.LOCAL_REPO), Path.of(PUSH_REMOTE));
+        quiet("add-remote", "origin", PUSH_REMOTE);
+        quiet("branch", SIDE);
+        Random random = new Random(_gen.seed);
+        for (int s = 0; s < _samples; s += 1) {
+            String path = change(random, 0);
+            time(s, "add", "add", path);
+            time(s, "commit", "commit", "sample " + s);
+            time(s, "status", "status");
+            time(s, "log", "log");
+            time(s, "log-path", "log", "--", path);
+            time(s, "checkout", "checkout", SIDE);
+            path = change(random, 1);
+            quiet("add", path);
+            quiet("commit", "side sample " + s);
+            time(s, "checkout", "checkout", "master");
+            time(s, "merge", "merge", SIDE);
+            time(s, "push", "push", "origin", "master");
+            fetchSample(s);
+        }
+    }
+
+    /** Time sample S of fetching master into an empty repository from
+     *  the generated one. */
+    private void fetchSample(int s) {
+        File local = new File(Utils.LOCAL_REPO);
+        File moved = new File(FETCH_REMOTE);
+        moved.getParentFile().mkdirs();
+        if (!local.renameTo(moved)) {
+            throw new IllegalStateException("cannot move the repository");
+        }
+        try {
+            quiet("init");
+            quiet("add-remote", "upstream", FETCH_REMOTE);
+            time(s, "fetch", "fetch", "upstream", "master");
+        } finally {
+            BenchRepo.delete(local);
+            moved.renameTo(local);
+        }
+    }
+
+    /** Give a random working file whose number has parity PARITY new
+     *  contents, and return its path. Master and the side branch change
+     *  files of different parities, so that their merges never
+     *  conflict. */
+    private String change(Random random, int parity) {
+        int i = 2 * random.nextInt(Math.max(1, _gen.files / 2)) + parity;
+        i = Math.min(i, _gen.files - 1);
+        byte[] content = new byte[_gen.fileSize];
+        random.nextBytes(content);
+        String path = RepoGenerator.path(i);
+        new Blob(content).writeIntoDirectory(path);
+        return path;
+    }
+
+    /** Run the command ARGS, discarding what it prints, and record its
+     *  latency as sample S of NAME and its peak heap. A sample recorded
+     *  twice keeps the sum of both runs. */
+    private void time(int s, String name, String... args) {
+        List<MemoryPoolMXBean> pools = heapPools();
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        quiet(args);
+        long elapsed = System.nanoTime() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        _times.get(name)[s] += elapsed;
+        _heaps.put(name, Math.max(_heaps.get(name), peak));
+    }
+
+    /** Run the command ARGS, discarding what it prints. */
+    private static void quiet(String... args) {
+        PrintStream out = System.out;
+        System.setOut(BenchRepo.NULL_OUT);
+        try {
+            Main.main(args);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Return the memory pools of the heap. */
+    private static List<MemoryPoolMXBean> heapPools() {
+        ArrayList<MemoryPoolMXBean> result = new ArrayList<>();
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                result.add(pool);
+            }
+        }
+        return result;
+    }
+
+    /** Copy directory FROM and everything below it to TO. */
+    private static void copyDirectory(Path from, Path to)
+        throws IOException {
+        try (Stream<Path> paths = Files.walk(from)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                Path target = to.resolve(from.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(p, target,
+                               StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    /** Return the P-th percentile of the sorted SORTED, in nanoseconds,
+     *  by the nearest-rank method. */
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /** Print a table of my results on OUT. */
+    void report(PrintStream out) {
+        out.println(_gen);
+        out.printf("%-9s %9s %9s %9s %9s %11s%n", "command", "p50 ms",
+                   "p90 ms", "p99 ms", "max ms", "peak MiB");
+        for (String command : COMMANDS) {
+            long[] sorted = _times.get(command).clone();
+            Arrays.sort(sorted);
+            out.printf("%-9s %9.2f %9.2f %9.2f %9.2f %11.1f%n", command,
+                       percentile(sorted, 50) / 1e6,
+                       percentile(sorted, 90) / 1e6,
+                       percentile(sorted, 99) / 1e6,
+                       sorted[sorted.length - 1] / 1e6,
+                       _heaps.get(command) / (1024.0 * 1024));
+        }
+        out.println();
+    }
+
+    /** Return my results as a JSON object. Times are in nanoseconds and
+     *  heap sizes in bytes. */
+    String toJSON() {
+        StringBuilder json = new StringBuilder("{\"point\":{");
+        String sep = "";
+        for (Map.Entry<String, Long> e : _gen.settings().entrySet()) {
+            json.append(sep).append('"').append(e.getKey()).append("\":")
+                .append(e.getValue());
+            sep = ",";
+        }
+        json.append("},\"samples\":").append(_samples);
+        json.append(",\"commands\":{");
+        sep = "";
+        for (String command : COMMANDS) {
+            long[] sorted = _times.get(command).clone();
+            Arrays.sort(sorted);
+            json.append(sep).append('"').append(command).append("\":{");
+            json.append("\"p50\":").append(percentile(sorted, 50));
+            json.append(",\"p90\":").append(percentile(sorted, 90));
+            json.append(",\"p99\":").append(percentile(sorted, 99));
+            json.append(",\"max\":").append(sorted[sorted.length - 1]);
+            json.append(",\"peakHeap\":").append(_heaps.get(command));
+            json.append("}");
+            sep = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    /** Commands measured, in the order they are reported. */
+    static final String[] COMMANDS = { "add", "commit", "status", "log",
+                                       "log-path", "checkout", "merge",
+                                       "push", "fetch" };
+
+    /** Shape of the repositories. */
+    private final RepoGenerator _gen;
+
+    /** Samples per command. */
+    private final int _samples;
+
+    /** Latency of each sample of each command, in nanoseconds. */
+    private final LinkedHashMap<String, long[]> _times =
+        new LinkedHashMap<>();
+
+    /** Largest peak heap of any sample of each command, in bytes. */
+    private final LinkedHashMap<String, Long> _heaps = new LinkedHashMap<>();
+}
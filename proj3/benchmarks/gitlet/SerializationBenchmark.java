@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Cost of Utils.serialize and Utils.readObject on commits, trees,
+ *  blobs and the repository object.
+ *  @author Zixian Zang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    /** Number of files tracked by the repository, and bytes in the
+     *  blob. */
+    @Param({"100", "10000"})
+    public int size;
+
+    /** Objects serialized. */
+    private Commit _commit;
+
+    /** Top tree of _commit. */
+    private Tree _tree;
+
+    /** A blob of SIZE bytes. */
+    private Blob _blob;
+
+    /** The repository. */
+    private CommitTree _repo;
+
+    /** Files the objects are read back from. */
+    private File _commitFile, _treeFile, _blobFile, _repoFile;
+
+    /** Build a repository whose head tracks SIZE files in one directory
+     *  and store each kind of object. */
+    @Setup
+    public void setup() {
+        _repo = BenchRepo.fresh();
+        HashMap<String, String> files = new HashMap<>();
+        for (int i = 0; i < size; i += 1) {
+            files.put("f" + i + ".txt", Utils.sha1("blob" + i));
+        }
+        BenchRepo.commitFiles(_repo, files, "many files");
+        _commit = Utils.getCommit(_repo.curHeadCommit());
+        _tree = Utils.getTree(_commit.tree());
+        _blob = new Blob(BenchRepo.randomBytes(size, 2));
+        _blob.serializeBlob();
+        _repo.serializeTree();
+        _commitFile = new File(Utils.commitObjectDir() + _commit.commitID());
+        _treeFile = new File(Utils.treeObjectDir() + _tree.treeID());
+        _blobFile = new File(Utils.blobObjectDir() + _blob.blobShaID());
+        _repoFile = new File(Utils.repoLoc());
+    }
+
+    /** Remove the repository. */
+    @TearDown
+    public void tearDown() {
+        BenchRepo.clean();
+    }
+
+    /** Serialize a commit. */
+    @Benchmark
+    public byte[] serializeCommit() {
+        return Utils.serialize(_commit);
+    }
+
+    /** Serialize a tree of SIZE entries. */
+    @Benchmark
+    public byte[] serializeTree() {
+        return Utils.serialize(_tree);
+    }
+
+    /** Serialize a blob of SIZE bytes. */
+    @Benchmark
+    public byte[] serializeBlob() {
+        return Utils.serialize(_blob);
+    }
+
+    /** Serialize the repository object. */
+    @Benchmark
+    public byte[] serializeRepo() {
+        return Utils.serialize(_repo);
+    }
+
+    /** Read a commit. */
+    @Benchmark
+    public Object readCommit() {
+        return Utils.readObject(_commitFile, Commit.class);
+    }
+
+    /** Read a tree of SIZE entries. */
+    @Benchmark
+    public Object readTree() {
+        return Utils.readObject(_treeFile, Tree.class);
+    }
+
+    /** Read a blob of SIZE bytes. */
+    @Benchmark
+    public Object readBlob() {
+        return Utils.readObject(_blobFile, Blob.class);
+    }
+
+    /** Read the repository object. */
+    @Benchmark
+    public Object readRepo() {
+        return Utils.readObject(_repoFile, CommitTree.class);
+    }
+}
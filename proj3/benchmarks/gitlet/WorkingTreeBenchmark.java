@@ -0,0 +1,78 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Cost of scanning a large working directory for untracked and
+ *  modified files. Half of the working files are tracked by the head
+ *  commit, and one tracked file in ten has changed since.
+ *  @author Zixian Zang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WorkingTreeBenchmark {
+
+    /** Number of working files. */
+    @Param({"1000", "10000"})
+    public int files;
+
+    /** Bytes in each working file. */
+    @Param({"1024"})
+    public int fileSize;
+
+    /** The repository. */
+    private CommitTree _repo;
+
+    /** Write the working files and commit half of them. */
+    @Setup
+    public void setup() {
+        _repo = BenchRepo.fresh();
+        HashMap<String, String> all =
+            BenchRepo.writeFiles(files, fileSize, 100);
+        HashMap<String, String> tracked = new HashMap<>();
+        for (int i = 0; i < files; i += 2) {
+            String path = BenchRepo.filePath(i, 100);
+            tracked.put(path, all.get(path));
+        }
+        BenchRepo.commitFiles(_repo, tracked, "half");
+        for (int i = 0; i < files; i += 20) {
+            new Blob(BenchRepo.randomBytes(fileSize, -i - 1))
+                .writeIntoDirectory(BenchRepo.filePath(i, 100));
+        }
+    }
+
+    /** Remove the repository and the working files. */
+    @TearDown
+    public void tearDown() {
+        BenchRepo.clean();
+    }
+
+    /** Find the untracked files, as checkout, reset and merge do. */
+    @Benchmark
+    public int untrackedFiles() {
+        return _repo.untrackedFiles().size();
+    }
+
+    /** Compute the untracked files section of status. */
+    @Benchmark
+    public int untrackStatus() {
+        return _repo.untrackStatus().size();
+    }
+
+    /** Compute the modifications section of status. */
+    @Benchmark
+    public int modifiedStatus() {
+        return _repo.modifiedStatus().size();
+    }
+}
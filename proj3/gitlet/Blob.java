@@ -1,50 +1,262 @@
 package gitlet;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 
 
-/** Blob class for Gitlet.
+/** Blob class for Gitlet. A blob is identified by its content only, so
+ *  identical files under different names share one stored object; the
+ *  names live in the manifests of commits. Files of CHUNKING_THRESHOLD
+ *  bytes or more are split into content-defined chunks that are stored
+ *  once each, and their blob only lists its chunks, so that a new
+ *  version of a large file only adds the chunks that changed.
  *  @author Zixian Zang
  */
 class Blob implements Serializable {
 
-    /** Name of the file. */
-    private String _filename;
+    /** Kept equal to the serial form of blobs that were addressed by
+     *  filename as well, so that migrate-blobs can still read them. */
+    private static final long serialVersionUID = 3138195326314989816L;
+
+    /** Smallest file that is stored in chunks. */
+    static final long CHUNKING_THRESHOLD = 1024 * 1024;
+
+    /** Size of the buffers used to stream file contents. */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /** Sha code of the file. */
     private String _shaID;
 
-    /** File in byte array. */
+    /** File in byte array, or null if it is stored in chunks. */
     private byte[] _fileByteContent;
 
-    /** File in String. */
-    private String _stringContent;
+    /** IDs of my chunks in order, or null if my content is inline. */
+    private ArrayList<String> _chunks;
+
+    /** Length of my content. */
+    private long _size;
 
 
-    /** Constructing blob object for file FILENAME. */
+    /** Constructing blob object for file FILENAME. A large file is read
+     *  one chunk at a time, and its new chunks are stored as they are
+     *  found. */
     Blob(String filename) {
         File f = new File(Utils.workingDirectory() + filename);
-        _filename = filename;
-        _fileByteContent = Utils.readContents(f);
-        _shaID = Utils.sha1(_filename, "BLOB", _fileByteContent);
-        _stringContent = new String(_fileByteContent);
-        this.serializeBlob();
+        if (f.length() < CHUNKING_THRESHOLD) {
+            initInline(Utils.readContents(f));
+        } else {
+            try (InputStream in = new FileInputStream(f)) {
+                initChunked(in);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Constructing blob object holding CONTENT, which is chunked as the
+     *  content of a file would be. */
+    Blob(byte[] content) {
+        if (content.length < CHUNKING_THRESHOLD) {
+            initInline(content);
+        } else {
+            try {
+                initChunked(new ByteArrayInputStream(content));
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Constructing blob object holding the content of IN. The content
+     *  is hashed, and chunked if it is large, as it is read, so at most
+     *  CHUNKING_THRESHOLD bytes of it are in memory at a time. */
+    Blob(InputStream in) {
+        try {
+            initStreamed(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Constructing blob object holding the content of IN, as for
+     *  Blob(IN), which is written into the working directory as FILENAME
+     *  as it is read. */
+    Blob(InputStream in, String filename) {
+        File target = new File(filename);
+        if (target.getParentFile() != null) {
+            target.getParentFile().mkdirs();
+        }
+        Trace.begin(Trace.Phase.WRITE);
+        try (OutputStream out = new BufferedOutputStream(
+                 Files.newOutputStream(target.toPath()), BUFFER_SIZE)) {
+            initStreamed(new CopyingInputStream(in, out));
+            Trace.bytesWritten(size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end();
+        }
+    }
+
+    /** Read a blob from IN, as written by encode. */
+    Blob(Codec.Reader in) throws IOException {
+        _shaID = in.readId();
+        _fileByteContent = in.readBytes();
+        _chunks = in.readIds(new ArrayList<>());
+        _size = in.readLong();
+    }
+
+    /** Write my fields to OUT. */
+    void encode(Codec.Writer out) throws IOException {
+        out.writeId(_shaID);
+        out.writeBytes(_fileByteContent);
+        out.writeIds(_chunks);
+        out.writeLong(_size);
+    }
+
+    /** Make me a blob holding CONTENT inline. */
+    private void initInline(byte[] content) {
+        _fileByteContent = content;
+        _size = content.length;
+        _shaID = contentID(content);
+    }
+
+    /** Make me a blob holding the content of IN, inline if it is shorter
+     *  than CHUNKING_THRESHOLD and in chunks otherwise. */
+    private void initStreamed(InputStream in) throws IOException {
+        byte[] head = in.readNBytes((int) CHUNKING_THRESHOLD);
+        if (head.length < CHUNKING_THRESHOLD) {
+            initInline(head);
+        } else {
+            initChunked(new SequenceInputStream(
+                    new ByteArrayInputStream(head), in));
+        }
+    }
+
+    /** Make me a blob holding the content of IN in chunks, storing the
+     *  chunks that are new. */
+    private void initChunked(InputStream in) throws IOException {
+        MessageDigest md = Utils.blobDigest();
+        Chunker chunker = new Chunker(in);
+        _chunks = new ArrayList<>();
+        for (byte[] chunk = chunker.next(); chunk != null;
+             chunk = chunker.next()) {
+            md.update(chunk);
+            _size += chunk.length;
+            _chunks.add(storeChunk(chunk));
+        }
+        _shaID = Utils.toHex(md.digest());
+    }
+
+    /** Store CHUNK unless it is already stored, and return its ID. */
+    private static String storeChunk(byte[] chunk) {
+        String id = Utils.hash("CHUNK", chunk);
+        File location = new File(Utils.chunkObjectDir() + id);
+        if (!location.exists()) {
+            location.getParentFile().mkdirs();
+            Utils.writeContents(location, chunk);
+        }
+        return id;
+    }
+
+    /** Return the ID of a blob holding CONTENT, without building it. */
+    static String contentID(byte[] content) {
+        return Utils.hash("BLOB", content);
     }
 
-    /** Return the filename related to this blob. */
-    String blobname() {
-        return _filename;
+    /** Return the ID of a blob holding the content of FILE, streaming it
+     *  into the digest without loading it whole. */
+    static String contentID(File file) {
+        MessageDigest md = Utils.blobDigest();
+        Trace.begin(Trace.Phase.READ);
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            Trace.bytesRead(Utils.update(md, in));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end();
+        }
+        return Utils.toHex(md.digest());
     }
 
     /** Return the content of the file in a string. */
     String blobInString() {
-        return _stringContent;
+        return new String(blobInByte(), StandardCharsets.UTF_8);
     }
 
-    /** Return the content of this file in byte. */
+    /** Return the content of this file in byte. A chunked blob is
+     *  assembled in memory; use openStream for large blobs instead. */
     byte[] blobInByte() {
-        return _fileByteContent;
+        if (_chunks == null) {
+            return _fileByteContent;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = openStream()) {
+            in.transferTo(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    /** Return a stream of my content that holds at most one chunk in
+     *  memory at a time. */
+    InputStream openStream() {
+        if (_chunks == null) {
+            return new ByteArrayInputStream(_fileByteContent);
+        }
+        Iterator<String> ids = _chunks.iterator();
+        Enumeration<InputStream> parts = new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                File chunk = new File(Utils.chunkObjectDir() + ids.next());
+                try {
+                    return new BufferedInputStream(
+                            Files.newInputStream(chunk.toPath()));
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+
+    /** Return the IDs of my chunks, in order; empty if my content is
+     *  stored inline. */
+    List<String> chunkIDs() {
+        if (_chunks == null) {
+            return Collections.emptyList();
+        }
+        return _chunks;
+    }
+
+    /** Return the length of my content. */
+    long size() {
+        return _fileByteContent != null ? _fileByteContent.length : _size;
     }
 
     /** Return the sha1 code of this blob. */
@@ -52,14 +264,70 @@ class Blob implements Serializable {
         return _shaID;
     }
 
-    /** Write my file into working directory. */
-    void writeIntoDirectory() {
-        Utils.writeContents(new File(_filename), _stringContent);
+    /** Write my content into the working directory as FILENAME, creating
+     *  the directories on its path as needed. Chunks are streamed back in
+     *  order. */
+    void writeIntoDirectory(String filename) {
+        File target = new File(filename);
+        if (target.getParentFile() != null) {
+            target.getParentFile().mkdirs();
+        }
+        if (_chunks == null) {
+            Utils.writeContents(target, _fileByteContent);
+            return;
+        }
+        Trace.begin(Trace.Phase.WRITE);
+        try (InputStream in = openStream();
+             OutputStream out = new BufferedOutputStream(
+                     Files.newOutputStream(target.toPath()), BUFFER_SIZE)) {
+            long n = in.transferTo(out);
+            Trace.bytesRead(n);
+            Trace.bytesWritten(n);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end();
+        }
     }
 
-    /** Serialize this blob object. */
+    /** Serialize this blob object, unless a blob with the same content
+     *  is already stored. */
     void serializeBlob() {
         File location = new File(Utils.blobObjectDir() + blobShaID() + "/");
+        if (location.exists()) {
+            return;
+        }
         Utils.writeObject(location, this);
     }
+
+    /** A stream that copies the bytes read from it to another stream. */
+    private static class CopyingInputStream extends FilterInputStream {
+
+        /** A stream reading IN and copying what it reads to OUT. */
+        CopyingInputStream(InputStream in, OutputStream out) {
+            super(in);
+            _out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                _out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                _out.write(b, off, n);
+            }
+            return n;
+        }
+
+        /** Where the bytes read are copied. */
+        private final OutputStream _out;
+    }
 }
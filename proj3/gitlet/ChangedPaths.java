@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/** A Bloom filter of the paths a commit changed from its first parent,
+ *  kept with the commit, so that a search of the history of one path
+ *  can pass over the commits that did not change it without reading
+ *  their trees. A filter never misses a path that was changed, but may
+ *  claim about one path in a hundred that was not; those are weeded out
+ *  by comparing the trees. A commit that changed more than MAX_PATHS
+ *  paths gets a filter that claims every path.
+ *  @author Zixian Zang
+ */
+class ChangedPaths {
+
+    /** Bits of the filter for each path. */
+    static final int BITS_PER_PATH = 10;
+
+    /** Bits set for each path. */
+    static final int HASHES = 7;
+
+    /** Most paths a filter is made for. */
+    static final int MAX_PATHS = 512;
+
+    /** Return the bytes of a filter of PATHS. */
+    static byte[] of(Collection<String> paths) {
+        if (paths.size() > MAX_PATHS) {
+            return new byte[] { -1 };
+        }
+        byte[] bits = new byte[(paths.size() * BITS_PER_PATH + 7) / 8];
+        for (String path : paths) {
+            long h = hash(path);
+            int bit = (int) h, step = (int) (h >>> 32) | 1;
+            for (int i = 0; i < HASHES; i += 1) {
+                int k = Math.floorMod(bit, bits.length * 8);
+                bits[k / 8] |= 1 << (k % 8);
+                bit += step;
+            }
+        }
+        return bits;
+    }
+
+    /** Return false if the filter BITS was certainly not made for PATH. */
+    static boolean mightContain(byte[] bits, String path) {
+        if (bits.length == 0) {
+            return false;
+        }
+        long h = hash(path);
+        int bit = (int) h, step = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i += 1) {
+            int k = Math.floorMod(bit, bits.length * 8);
+            if ((bits[k / 8] & (1 << (k % 8))) == 0) {
+                return false;
+            }
+            bit += step;
+        }
+        return true;
+    }
+
+    /** Return the 64-bit FNV-1a hash of the UTF-8 bytes of PATH. */
+    private static long hash(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Splits a stream into content-defined chunks in the manner of FastCDC.
+ *  A rolling gear hash over the bytes read so far picks the cut points,
+ *  so an edit only changes the chunks around it and all others are cut
+ *  exactly as before. Cut points are looked for with a stricter mask
+ *  below the average chunk size and a looser one above it, which keeps
+ *  chunk sizes close to the average. At most one chunk of the stream is
+ *  held in memory at a time.
+ *  @author Zixian Zang
+ */
+class Chunker {
+
+    /** Smallest chunk, except for the last one of a stream. */
+    static final int MIN_SIZE = 16 * 1024;
+
+    /** Size chunks are cut at on average. */
+    static final int AVG_SIZE = 64 * 1024;
+
+    /** Largest chunk. */
+    static final int MAX_SIZE = 256 * 1024;
+
+    /** Mask used below AVG_SIZE: 18 bits, so cuts are rarer than 1 in
+     *  AVG_SIZE bytes. */
+    private static final long MASK_S = 0xFFFFC00000000000L;
+
+    /** Mask used above AVG_SIZE: 14 bits, so cuts are more frequent. */
+    private static final long MASK_L = 0xFFFC000000000000L;
+
+    /** Seed of GEAR. It must never change, or chunks stored earlier
+     *  would no longer be found again. */
+    private static final long GEAR_SEED = 0x6769746C6574L;
+
+    /** Random value of each byte for the gear hash. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(GEAR_SEED);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** A chunker reading from IN. */
+    Chunker(InputStream in) {
+        _in = in;
+        _buf = new byte[MAX_SIZE];
+    }
+
+    /** Return the next chunk of my stream, or null at its end. */
+    byte[] next() throws IOException {
+        fill();
+        int n = _end - _start;
+        if (n == 0) {
+            return null;
+        }
+        int len = cutPoint(_buf, _start, n);
+        byte[] chunk = Arrays.copyOfRange(_buf, _start, _start + len);
+        _start += len;
+        return chunk;
+    }
+
+    /** Read until my buffer holds MAX_SIZE unchunked bytes or the stream
+     *  has ended. */
+    private void fill() throws IOException {
+        if (_eof || _end - _start >= MAX_SIZE) {
+            return;
+        }
+        System.arraycopy(_buf, _start, _buf, 0, _end - _start);
+        _end -= _start;
+        _start = 0;
+        while (_end < _buf.length) {
+            int read = _in.read(_buf, _end, _buf.length - _end);
+            if (read < 0) {
+                _eof = true;
+                break;
+            }
+            _end += read;
+        }
+    }
+
+    /** Return the length of the chunk starting at BYTES[OFF], where N
+     *  bytes are available. */
+    static int cutPoint(byte[] bytes, int off, int n) {
+        if (n <= MIN_SIZE) {
+            return n;
+        }
+        int normal = Math.min(n, AVG_SIZE);
+        int limit = Math.min(n, MAX_SIZE);
+        long fp = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i += 1) {
+            fp = (fp << 1) + GEAR[bytes[off + i] & 0xff];
+            if ((fp & MASK_S) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; i += 1) {
+            fp = (fp << 1) + GEAR[bytes[off + i] & 0xff];
+            if ((fp & MASK_L) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    /** Source of bytes. */
+    private final InputStream _in;
+
+    /** Bytes read but not yet returned lie in _buf[_start .. _end-1]. */
+    private final byte[] _buf;
+
+    /** Bounds of the unchunked bytes in _buf. */
+    private int _start, _end;
+
+    /** True once _in has ended. */
+    private boolean _eof;
+}
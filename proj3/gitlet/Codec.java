@@ -0,0 +1,482 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The binary encoding of stored objects. An encoded object starts with
+ *  the three bytes "GLT", the version of the encoding and a tag naming
+ *  its class, followed by the fields its class writes in order. Strings
+ *  and byte arrays are prefixed by their lengths, collections by their
+ *  sizes, and object IDs are stored as their raw bytes. Unlike Java
+ *  serialization, no class descriptors or field names are stored, so
+ *  objects are a fraction of the size and fields may be renamed freely;
+ *  a change of the fields themselves needs a new VERSION, which readers
+ *  get from Reader.version to decode older objects.
+ *
+ *  Objects written by Java serialization, which start with the bytes
+ *  0xACED, are still read, so that repositories made before this
+ *  encoding can be converted object by object.
+ *  @author Zixian Zang
+ */
+class Codec {
+
+    /** First bytes of every encoded object. */
+    private static final byte[] MAGIC = { 'G', 'L', 'T' };
+
+    /** Version of the encoding written. Version 2 added the parents of
+     *  commits after the second, and version 3 their filters of changed
+     *  paths. */
+    static final int VERSION = 3;
+
+    /** Length of the header before the fields of an object. */
+    private static final int HEADER = MAGIC.length + 2;
+
+    /** Tags of the classes that can be encoded. */
+    private static final byte COMMIT = 'C', BLOB = 'B', TREE = 'T',
+        REPO = 'R';
+
+    /** Bytes with which Java serialization streams start. */
+    private static final int JAVA_MAGIC = 0xACED;
+
+    /** Return true if OBJ can be encoded. */
+    static boolean encodes(Object obj) {
+        return obj instanceof Commit || obj instanceof Blob
+            || obj instanceof Tree || obj instanceof CommitTree;
+    }
+
+    /** Return the encoding of OBJ, which must be a Commit, Blob, Tree or
+     *  CommitTree. */
+    static byte[] encode(Object obj) {
+        Writer out = new Writer();
+        try {
+            out.header(tagOf(obj));
+            if (obj instanceof Commit) {
+                ((Commit) obj).encode(out);
+            } else if (obj instanceof Blob) {
+                ((Blob) obj).encode(out);
+            } else if (obj instanceof Tree) {
+                ((Tree) obj).encode(out);
+            } else {
+                ((CommitTree) obj).encode(out);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding object.");
+        }
+        return out.toByteArray();
+    }
+
+    /** Return the tag of the class of OBJ. */
+    private static byte tagOf(Object obj) {
+        if (obj instanceof Commit) {
+            return COMMIT;
+        } else if (obj instanceof Blob) {
+            return BLOB;
+        } else if (obj instanceof Tree) {
+            return TREE;
+        } else if (obj instanceof CommitTree) {
+            return REPO;
+        }
+        throw new IllegalArgumentException("cannot encode "
+                                           + obj.getClass().getName());
+    }
+
+    /** Return true if BYTES were written by Java serialization. */
+    static boolean isLegacy(byte[] bytes) {
+        return bytes.length >= 2
+            && ((bytes[0] & 0xff) << 8 | (bytes[1] & 0xff)) == JAVA_MAGIC;
+    }
+
+    /** Return the object encoded, or serialized by Java, in BYTES, cast
+     *  to EXPECTEDCLASS. Throws IllegalArgumentException if BYTES hold
+     *  no such object. */
+    static <T> T decode(byte[] bytes, Class<T> expectedClass) {
+        try {
+            if (isLegacy(bytes)) {
+                ObjectInputStream in =
+                    new ObjectInputStream(new ByteArrayInputStream(bytes));
+                return expectedClass.cast(in.readObject());
+            }
+            Reader in = new Reader(bytes);
+            Object result;
+            switch (in.tag()) {
+            case COMMIT:
+                result = new Commit(in);
+                break;
+            case BLOB:
+                result = new Blob(in);
+                break;
+            case TREE:
+                result = new Tree(in);
+                break;
+            case REPO:
+                result = new CommitTree(in);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown object tag");
+            }
+            return expectedClass.cast(result);
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Fields of an object being encoded. */
+    static class Writer {
+
+        /** Write the header of an object of class tag TAG. */
+        void header(byte tag) throws IOException {
+            _data.write(MAGIC);
+            _data.writeByte(VERSION);
+            _data.writeByte(tag);
+        }
+
+        /** Write B. */
+        void writeBoolean(boolean b) throws IOException {
+            _data.writeBoolean(b);
+        }
+
+        /** Write N. */
+        void writeInt(int n) throws IOException {
+            _data.writeInt(n);
+        }
+
+        /** Write N. */
+        void writeLong(long n) throws IOException {
+            _data.writeLong(n);
+        }
+
+        /** Write S, which may be null, as UTF-8. */
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                _data.writeInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            _data.writeInt(bytes.length);
+            _data.write(bytes);
+        }
+
+        /** Write BYTES, which may be null. */
+        void writeBytes(byte[] bytes) throws IOException {
+            if (bytes == null) {
+                _data.writeInt(-1);
+                return;
+            }
+            _data.writeInt(bytes.length);
+            _data.write(bytes);
+        }
+
+        /** Write ID, which may be null. A full hexadecimal SHA-1 or SHA-256
+         *  object ID is written as its raw bytes; any other string as it
+         *  is. */
+        void writeId(String id) throws IOException {
+            if (id == null) {
+                _data.writeByte(NO_ID);
+            } else if (isFullId(id)) {
+                byte[] raw = ObjectId.parse(id).toBytes();
+                _data.writeByte(raw.length == ObjectId.LENGTH ? RAW_ID
+                                : WIDE_ID);
+                _data.write(raw);
+            } else {
+                _data.writeByte(TEXT_ID);
+                writeString(id);
+            }
+        }
+
+        /** Write ID, which may be null, as writeId(String) writes its
+         *  hexadecimal form. */
+        void writeId(ObjectId id) throws IOException {
+            if (id == null) {
+                _data.writeByte(NO_ID);
+                return;
+            }
+            byte[] raw = id.toBytes();
+            _data.writeByte(raw.length == ObjectId.LENGTH ? RAW_ID : WIDE_ID);
+            _data.write(raw);
+        }
+
+        /** Write the IDs in IDS, as writeIds writes their hexadecimal
+         *  forms. */
+        void writeIdSet(IdSet ids) throws IOException {
+            _data.writeInt(ids.size());
+            for (ObjectId id : ids) {
+                writeId(id);
+            }
+        }
+
+        /** Write the strings in STRINGS, which may be null. */
+        void writeStrings(Collection<String> strings) throws IOException {
+            if (strings == null) {
+                _data.writeInt(-1);
+                return;
+            }
+            _data.writeInt(strings.size());
+            for (String s : strings) {
+                writeString(s);
+            }
+        }
+
+        /** Write the IDs in IDS, which may be null. */
+        void writeIds(Collection<String> ids) throws IOException {
+            if (ids == null) {
+                _data.writeInt(-1);
+                return;
+            }
+            _data.writeInt(ids.size());
+            for (String id : ids) {
+                writeId(id);
+            }
+        }
+
+        /** Write MAP, which may be null, from strings to IDs. */
+        void writeIdMap(Map<String, String> map) throws IOException {
+            if (map == null) {
+                _data.writeInt(-1);
+                return;
+            }
+            _data.writeInt(map.size());
+            for (Map.Entry<String, String> e : map.entrySet()) {
+                writeString(e.getKey());
+                writeId(e.getValue());
+            }
+        }
+
+        /** Write MAP, which may be null, from strings to strings. */
+        void writeStringMap(Map<String, String> map) throws IOException {
+            if (map == null) {
+                _data.writeInt(-1);
+                return;
+            }
+            _data.writeInt(map.size());
+            for (Map.Entry<String, String> e : map.entrySet()) {
+                writeString(e.getKey());
+                writeString(e.getValue());
+            }
+        }
+
+        /** Return everything written so far. */
+        byte[] toByteArray() {
+            return _bytes.toByteArray();
+        }
+
+        /** Destination of the bytes. */
+        private final ByteArrayOutputStream _bytes =
+            new ByteArrayOutputStream();
+
+        /** Writes primitives to _bytes. */
+        private final DataOutputStream _data = new DataOutputStream(_bytes);
+    }
+
+    /** Fields of an object being decoded. */
+    static class Reader {
+
+        /** A reader of the object encoded in BYTES, positioned after its
+         *  header. */
+        Reader(byte[] bytes) throws IOException {
+            if (bytes.length < HEADER || bytes[0] != MAGIC[0]
+                || bytes[1] != MAGIC[1] || bytes[2] != MAGIC[2]) {
+                throw new IOException("not an encoded object");
+            }
+            _version = bytes[MAGIC.length];
+            _tag = bytes[MAGIC.length + 1];
+            if (_version < 1 || _version > VERSION) {
+                throw new IOException("unknown encoding version "
+                                      + _version);
+            }
+            _data = new DataInputStream(
+                new ByteArrayInputStream(bytes, HEADER,
+                                         bytes.length - HEADER));
+        }
+
+        /** Return the version of the encoding being read. */
+        int version() {
+            return _version;
+        }
+
+        /** Return the tag of the class of the object being read. */
+        byte tag() {
+            return _tag;
+        }
+
+        /** Return the next boolean. */
+        boolean readBoolean() throws IOException {
+            return _data.readBoolean();
+        }
+
+        /** Return the next int. */
+        int readInt() throws IOException {
+            return _data.readInt();
+        }
+
+        /** Return the next long. */
+        long readLong() throws IOException {
+            return _data.readLong();
+        }
+
+        /** Return the next string, or null. */
+        String readString() throws IOException {
+            byte[] bytes = readBytes();
+            return bytes == null ? null
+                : new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** Return the next byte array, or null. */
+        byte[] readBytes() throws IOException {
+            int n = readSize();
+            if (n < 0) {
+                return null;
+            }
+            byte[] result = new byte[n];
+            _data.readFully(result);
+            return result;
+        }
+
+        /** Return the next ID in hexadecimal, or null. */
+        String readId() throws IOException {
+            byte kind = _data.readByte();
+            if (kind == NO_ID) {
+                return null;
+            } else if (kind == RAW_ID || kind == WIDE_ID) {
+                byte[] raw = new byte[kind == RAW_ID ? ObjectId.LENGTH
+                                      : ObjectId.WIDE_LENGTH];
+                _data.readFully(raw);
+                return Utils.toHex(raw);
+            }
+            return readString();
+        }
+
+        /** Return the next ID, which must be a full object ID, or
+         *  null. */
+        ObjectId readObjectId() throws IOException {
+            byte kind = _data.readByte();
+            if (kind == NO_ID) {
+                return null;
+            } else if (kind == RAW_ID || kind == WIDE_ID) {
+                byte[] raw = new byte[kind == RAW_ID ? ObjectId.LENGTH
+                                      : ObjectId.WIDE_LENGTH];
+                _data.readFully(raw);
+                return ObjectId.fromBytes(raw);
+            }
+            return ObjectId.parse(readString());
+        }
+
+        /** Return the next IDs, which must be full object IDs, as a new
+         *  set, or null if none were written. */
+        IdSet readIdSet() throws IOException {
+            int n = readSize();
+            if (n < 0) {
+                return null;
+            }
+            IdSet result = new IdSet(n);
+            for (int i = 0; i < n; i += 1) {
+                result.add(readObjectId());
+            }
+            return result;
+        }
+
+        /** Add the next strings to INTO, and return INTO, or null if
+         *  none were written. */
+        <C extends Collection<String>> C readStrings(C into)
+            throws IOException {
+            int n = readSize();
+            if (n < 0) {
+                return null;
+            }
+            for (int i = 0; i < n; i += 1) {
+                into.add(readString());
+            }
+            return into;
+        }
+
+        /** Add the next IDs to INTO, and return INTO, or null if none
+         *  were written. */
+        <C extends Collection<String>> C readIds(C into) throws IOException {
+            int n = readSize();
+            if (n < 0) {
+                return null;
+            }
+            for (int i = 0; i < n; i += 1) {
+                into.add(readId());
+            }
+            return into;
+        }
+
+        /** Put the next map from strings to IDs into INTO, and return
+         *  INTO, or null if none was written. */
+        <M extends Map<String, String>> M readIdMap(M into)
+            throws IOException {
+            int n = readSize();
+            if (n < 0) {
+                return null;
+            }
+            for (int i = 0; i < n; i += 1) {
+                String key = readString();
+                into.put(key, readId());
+            }
+            return into;
+        }
+
+        /** Return the next map from strings to strings, or null. */
+        HashMap<String, String> readStringMap() throws IOException {
+            int n = readSize();
+            if (n < 0) {
+                return null;
+            }
+            HashMap<String, String> result = new HashMap<>(2 * n);
+            for (int i = 0; i < n; i += 1) {
+                String key = readString();
+                result.put(key, readString());
+            }
+            return result;
+        }
+
+        /** Return the next length or size, or -1 for null, checking that
+         *  it is not longer than what is left. */
+        int readSize() throws IOException {
+            int n = _data.readInt();
+            if (n < -1 || n > _data.available()) {
+                throw new EOFException("bad length " + n);
+            }
+            return n;
+        }
+
+        /** Version of the encoding. */
+        private final int _version;
+
+        /** Tag of the class of the object. */
+        private final byte _tag;
+
+        /** Source of the fields. */
+        private final DataInputStream _data;
+    }
+
+    /** Return true if ID is a full SHA-1 or SHA-256 object ID in
+     *  lower-case hex. */
+    private static boolean isFullId(String id) {
+        if (id.length() != 2 * ObjectId.LENGTH
+            && id.length() != 2 * ObjectId.WIDE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i += 1) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Markers of the ways an ID is written. */
+    private static final byte NO_ID = 0, RAW_ID = 1, TEXT_ID = 2,
+        WIDE_ID = 3;
+}
@@ -1,24 +1,44 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 /** Represent the condition of a commit.
  *  @author zixianzang
  */
 public class Commit implements Serializable {
 
+    /** Kept equal to the serial form of commits written before methods
+     *  were added, so that they stay readable. */
+    private static final long serialVersionUID = 5652310218734556040L;
+
     /** The message assigned to this commit. */
     private String _commitMessage;
 
     /** The ID of this commit. */
     private String _shacode;
 
-    /** Map from filename in this commit to its sha1code. */
+    /** ID of the tree holding the top directory of this commit. */
+    private String _tree;
+
+    /** Map from filename to its sha1code, kept only by commits written
+     *  before trees were introduced. */
     private HashMap<String, String> _myBlobs;
 
+    /** ID of the tree built in memory from my manifest, if I was written
+     *  before trees were introduced, when first asked for. */
+    private transient String _builtTree;
+
+    /** Map from the path of each file in this commit to its blob ID,
+     *  flattened from my tree when first asked for. */
+    private transient HashMap<String, String> _flat;
+
     /** Time of this commit. */
     private String _time;
 
@@ -28,49 +48,196 @@ public class Commit implements Serializable {
     /** Second parent of this commit. */
     private String _parent2;
 
+    /** Parents after the second, of a merge of several branches at once,
+     *  or null. */
+    private ArrayList<String> _moreParents;
+
+    /** Filter of the paths I changed from my first parent, or null if
+     *  they are not known. */
+    private byte[] _changedPaths;
+
     /** If this a merge head. */
     private boolean _merge;
 
+    /** Binary IDs of my parents, parsed when first asked for. */
+    private transient ObjectId _parent1Id, _parent2Id;
+
+
+    /** Constructing commit object. With message MSG, PARENT1 and
+     * PARENT2 as two potential parent commits, FILES as the map from
+     * each tracked path to its blob ID, TIME as commit time. */
+    Commit(String msg, String parent1, String parent2,
+           Map<String, String> files, String time) {
+        this(msg, parent1, parent2,
+             Tree.build(files == null ? new HashMap<>() : files), time);
+    }
 
     /** Constructing commit object. With message MSG, PARENT1 and
-     * PARENT2 as two potential parent commits, BLOBS as all ths
-     * blobs tracked in this commit, TIME as commit time. */
+     * PARENT2 as two potential parent commits, TREE as the ID of the
+     * stored tree of its top directory, TIME as commit time. */
     Commit(String msg, String parent1, String parent2,
-           HashSet<Blob> blobs, String time) {
+           String tree, String time) {
         _time = time;
         _parent1 = parent1;
         _parent2 = parent2;
         _commitMessage = msg;
-        _myBlobs = new HashMap<>();
-        if (blobs != null) {
-            for (Blob b : blobs) {
-                if (b.blobname().startsWith(".")) {
-                    continue;
-                }
-                _myBlobs.put(b.blobname(), b.blobShaID());
-            }
-        }
-        String presha1 = "commit" + _time + _commitMessage + parent1 + parent2;
-        for (String s : _myBlobs.values()) {
-            Blob b = Utils.getBlob(s);
-            presha1 = presha1.concat(b.blobInString());
-            presha1 = presha1.concat(b.blobname());
-        }
-        _shacode = Utils.sha1(presha1);
+        _tree = tree;
+        Tree.store(tree);
+        _shacode = computeID();
         if (parent1 != null & parent2 != null) {
             _merge = true;
         }
+        _changedPaths = filterChanges();
+        this.serializeC();
+    }
+
+    /** Constructing commit object. With message MSG, the IDs of its
+     * PARENTS in order, of which there are at least two, TREE as the ID
+     * of the stored tree of its top directory, TIME as commit time. */
+    Commit(String msg, List<String> parents, String tree, String time) {
+        _time = time;
+        _parent1 = parents.get(0);
+        _parent2 = parents.get(1);
+        if (parents.size() > 2) {
+            _moreParents = new ArrayList<>(parents.subList(2, parents.size()));
+        }
+        _commitMessage = msg;
+        _tree = tree;
+        Tree.store(tree);
+        _shacode = computeID();
+        _merge = true;
+        _changedPaths = filterChanges();
         this.serializeC();
     }
 
+    /** Read a commit from IN, as written by encode. */
+    Commit(Codec.Reader in) throws IOException {
+        _commitMessage = in.readString();
+        _shacode = in.readId();
+        _tree = in.readId();
+        _myBlobs = in.readIdMap(new HashMap<>());
+        _time = in.readString();
+        _parent1 = in.readId();
+        _parent2 = in.readId();
+        _merge = in.readBoolean();
+        if (in.version() >= 2) {
+            _moreParents = in.readIds(new ArrayList<>());
+        }
+        if (in.version() >= 3) {
+            _changedPaths = in.readBytes();
+        }
+    }
+
+    /** Write my fields to OUT. */
+    void encode(Codec.Writer out) throws IOException {
+        out.writeString(_commitMessage);
+        out.writeId(_shacode);
+        out.writeId(_tree);
+        out.writeIdMap(_myBlobs);
+        out.writeString(_time);
+        out.writeId(_parent1);
+        out.writeId(_parent2);
+        out.writeBoolean(_merge);
+        out.writeIds(_moreParents);
+        out.writeBytes(_changedPaths);
+    }
+
+    /** Return a filter of the paths I change from my first parent, or
+     *  null if my first parent is not stored here. */
+    private byte[] filterChanges() {
+        String parentTree = null;
+        if (_parent1 != null) {
+            File parent = new File(Utils.commitObjectDir() + _parent1);
+            if (!parent.exists()) {
+                return null;
+            }
+            parentTree = Utils.getCommit(_parent1).tree();
+        }
+        return ChangedPaths.of(Tree.diff(parentTree, _tree).keySet());
+    }
+
+    /** Return false if I certainly have the same version of PATH as my
+     *  first parent, or the same absence of it. That is found from my
+     *  filter of changed paths alone, without reading any tree. */
+    boolean mayHaveChanged(String path) {
+        return _changedPaths == null
+            || ChangedPaths.mightContain(_changedPaths, path);
+    }
+
+    /** Return the ID my fields hash to, which is my ID unless I was
+     * damaged. Only meaningful for commits stored with a tree. */
+    String computeID() {
+        StringBuilder presha1 = new StringBuilder();
+        presha1.append("commit").append(_time).append(_commitMessage);
+        presha1.append(_parent1).append(_parent2);
+        if (_moreParents != null) {
+            for (String parent : _moreParents) {
+                presha1.append(parent);
+            }
+        }
+        presha1.append(_tree);
+        return Utils.hash(presha1.toString());
+    }
+
     /** Return the ID of this commit. */
     public String commitID() {
         return _shacode;
     }
 
-    /** Return mapping from filename to ID in this commit. */
+    /** Return mapping from the path of each file to its ID in this
+     * commit. */
     HashMap<String, String> filesInCommit() {
-        return _myBlobs;
+        if (_tree == null) {
+            return _myBlobs;
+        }
+        if (_flat == null) {
+            _flat = new HashMap<>();
+            Tree.flatten(_tree, "", _flat);
+        }
+        return _flat;
+    }
+
+    /** Return the ID of the tree of this commit. Commits written before
+     * trees were introduced get one built in memory from their manifest,
+     * which is only stored by storeTree. */
+    String tree() {
+        if (_tree != null) {
+            return _tree;
+        }
+        if (_builtTree == null) {
+            _builtTree = Tree.buildUnstored(_myBlobs);
+        }
+        return _builtTree;
+    }
+
+    /** Store my tree, if I was written before trees were introduced and
+     * it was only built in memory. */
+    void storeTree() {
+        if (_tree == null) {
+            Tree.store(tree());
+        }
+    }
+
+    /** Return true if this commit stores its snapshot as a tree. */
+    boolean hasTree() {
+        return _tree != null;
+    }
+
+    /** Return the blob ID of PATH in this commit, or null if it does not
+     * track PATH. Unless my manifest has already been flattened, only the
+     * trees along PATH are read. */
+    String blobOf(String path) {
+        if (_tree == null) {
+            return _myBlobs.get(path);
+        } else if (_flat != null) {
+            return _flat.get(path);
+        }
+        return Tree.lookup(_tree, path);
+    }
+
+    /** Return the message of this commit. */
+    String message() {
+        return _commitMessage;
     }
 
     /** Return ID of parent1 of this commit. */
@@ -83,6 +250,63 @@ public class Commit implements Serializable {
         return _parent2;
     }
 
+    /** Return the IDs of all my parents, in order. */
+    List<String> parents() {
+        ArrayList<String> result = new ArrayList<>();
+        if (_parent1 != null) {
+            result.add(_parent1);
+        }
+        if (_parent2 != null) {
+            result.add(_parent2);
+        }
+        if (_moreParents != null) {
+            result.addAll(_moreParents);
+        }
+        return result;
+    }
+
+    /** Return the IDs of my parents after the second; empty unless I
+     * merged several branches at once. */
+    List<String> moreParents() {
+        if (_moreParents == null) {
+            return Collections.emptyList();
+        }
+        return _moreParents;
+    }
+
+    /** Return the binary ID of parent1 of this commit, or null. */
+    ObjectId parent1Id() {
+        if (_parent1Id == null && _parent1 != null) {
+            _parent1Id = ObjectId.parse(_parent1);
+        }
+        return _parent1Id;
+    }
+
+    /** Return the binary ID of parent2 of this commit, or null. */
+    ObjectId parent2Id() {
+        if (_parent2Id == null && _parent2 != null) {
+            _parent2Id = ObjectId.parse(_parent2);
+        }
+        return _parent2Id;
+    }
+
+    /** Replace every blob ID in my manifest that is a key of OLD2NEW
+     * by its mapped ID, keeping my own ID, and store me again. Only
+     * commits written before trees were introduced need this. */
+    void remapBlobs(Map<String, String> old2new) {
+        if (_myBlobs == null) {
+            return;
+        }
+        for (Map.Entry<String, String> e : _myBlobs.entrySet()) {
+            String replacement = old2new.get(e.getValue());
+            if (replacement != null) {
+                e.setValue(replacement);
+            }
+        }
+        _builtTree = null;
+        serializeC();
+    }
+
     /** Return true if this commit is not the initial commit. */
     boolean hasParent() {
         return _parent1 != null | _parent2 != null;
@@ -99,9 +323,8 @@ public class Commit implements Serializable {
     /** Write all blobs into working directory, assume the working directory has
      * already been cleaned. */
     void writeAllFiles() {
-        for (String blobID : _myBlobs.values()) {
-            Blob b = Utils.getBlob(blobID);
-            Utils.writeContents(new File(b.blobname()), b.blobInByte());
+        for (Map.Entry<String, String> e : filesInCommit().entrySet()) {
+            Utils.getBlob(e.getValue()).writeIntoDirectory(e.getKey());
         }
     }
 
@@ -113,7 +336,11 @@ public class Commit implements Serializable {
         builder.append(_shacode).append("\n");
         if (_merge) {
             builder.append("Merge: ").append(parent1().substring(0, 7));
-            builder.append(" ").append(parent2().substring(0, 7)).append("\n");
+            builder.append(" ").append(parent2().substring(0, 7));
+            for (String parent : moreParents()) {
+                builder.append(" ").append(parent.substring(0, 7));
+            }
+            builder.append("\n");
         }
         builder.append("Date: ");
         builder.append(_time).append("\n");
@@ -1,14 +1,27 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Tree structure to run gitlet.
@@ -16,6 +29,10 @@ import java.util.Date;
  */
 public class CommitTree implements Serializable {
 
+    /** Kept equal to the serial form of repositories written before
+     *  fields were added, so that they stay readable. */
+    private static final long serialVersionUID = 3394617997654888060L;
+
     /** Execute add-remote command for remote name NAME and path PATH.*/
     void addRemote(String name, String path) {
         if (_remotes.containsKey(name)) {
@@ -33,6 +50,7 @@ public class CommitTree implements Serializable {
             System.exit(0);
         }
         _remotes.remove(name);
+        promisors().remove(name);
     }
 
     /** Execute push command.
@@ -40,31 +58,40 @@ public class CommitTree implements Serializable {
      * @param remoteBranch name of remote branch we're adding to
      * */
     void push(String remoteName, String remoteBranch) {
+        GitletEvents.RemoteTransfer event = new GitletEvents.RemoteTransfer();
+        event.begin();
         File remoteGit = new File(_remotes.get(remoteName));
         if (!remoteGit.exists()) {
             System.out.println("Remote directory not found.");
             System.exit(0);
         }
+        checkObjectFormat(remoteGit);
         CommitTree remoteRepo = Utils.getRemoteRepo(remoteName);
-        HashSet<String> historyOfHead = allAncestors(curHeadCommit());
-        String remoteHeadID = remoteRepo._branches.get(remoteBranch);
+        IdSet historyOfHead = allAncestors(curHeadCommit());
+        ObjectId remoteHead = remoteRepo._branches.get(remoteBranch);
         Commit curHeadCommit = Utils.getCommit(curHeadCommit());
-        if (!historyOfHead.contains(remoteHeadID)) {
+        if (remoteHead == null || !historyOfHead.contains(remoteHead)) {
             System.out.println("Please pull down remote "
                     + "changes before pushing.");
             System.exit(0);
         }
         Commit tracker = curHeadCommit;
-        while (!remoteHeadID.equals(tracker.commitID())) {
+        ArrayList<String> pushed = new ArrayList<>();
+        while (!remoteHead.toString().equals(tracker.commitID())) {
+            copySnapshot(tracker, Utils.LOCAL_REPO,
+                         _remotes.get(remoteName), true);
             Utils.addLocalCommitToRemote(remoteName, tracker.commitID());
-            remoteRepo._commits.add(tracker.commitID());
-            for (String blobID : tracker.filesInCommit().values()) {
-                Utils.addLocalBlobToRemote(remoteName, blobID);
-            }
+            remoteRepo._commits.add(ObjectId.parse(tracker.commitID()));
+            pushed.add(tracker.commitID());
             tracker = Utils.getCommit(tracker.parent1());
         }
-        remoteRepo._branches.put(remoteBranch, curHeadCommit());
+        Collections.reverse(pushed);
+        PathHistory.append(pushed, _remotes.get(remoteName) + File.separator
+                           + "history" + File.separator);
+        remoteRepo._branches.put(remoteBranch, _branches.get(_curBranch));
         Utils.saveRemoteTree(remoteName, remoteRepo);
+        event.finish("push", remoteName, remoteBranch, pushed.size(),
+                     false);
     }
 
     /** Execute fetch command.
@@ -72,11 +99,24 @@ public class CommitTree implements Serializable {
      * @param remoteBranch name of remote branch we're adding from
      * */
     void fetch(String remoteName, String remoteBranch) {
+        fetch(remoteName, remoteBranch, false);
+    }
+
+    /** Execute fetch command. A PARTIAL fetch copies only commits, which
+     * carry the manifests, and records the remote as a promisor from which
+     * missing blobs are fetched when they are first needed.
+     * @param remoteName name of remote repo
+     * @param remoteBranch name of remote branch we're adding from
+     * */
+    void fetch(String remoteName, String remoteBranch, boolean partial) {
+        GitletEvents.RemoteTransfer event = new GitletEvents.RemoteTransfer();
+        event.begin();
         File remoteGit = new File(_remotes.get(remoteName));
         if (!remoteGit.exists()) {
             System.out.println("Remote directory not found.");
             System.exit(0);
         }
+        checkObjectFormat(remoteGit);
         CommitTree remoteRepo = Utils.getRemoteRepo(remoteName);
         if (!remoteRepo._branches.containsKey(remoteBranch)) {
             System.out.println("That remote does not have that branch.");
@@ -84,19 +124,53 @@ public class CommitTree implements Serializable {
         }
         Commit remoteHead =
                 Utils.getRemoteCommit(remoteName,
-                        remoteRepo._branches.get(remoteBranch));
+                        remoteRepo.branchHead(remoteBranch));
         Commit tracker = remoteHead;
-        while (!_commits.contains(tracker.commitID())) {
+        ArrayList<String> fetched = new ArrayList<>();
+        while (!_commits.contains(ObjectId.parse(tracker.commitID()))) {
+            copySnapshot(tracker, _remotes.get(remoteName),
+                         Utils.LOCAL_REPO, !partial);
             Utils.addRemoteCommitToLocal(remoteName, tracker.commitID());
-            _commits.add(tracker.commitID());
-            for (String blobID : tracker.filesInCommit().values()) {
-                Utils.addRemoteBlobToLocal(remoteName, blobID);
-            }
+            _commits.add(ObjectId.parse(tracker.commitID()));
+            fetched.add(tracker.commitID());
             tracker = Utils.getRemoteCommit(remoteName, tracker.parent1());
         }
+        Collections.reverse(fetched);
+        PathHistory.record(fetched, _commits);
+        if (partial) {
+            promisors().add(remoteName);
+        }
         String newBranchName = remoteName + "/" + remoteBranch;
-        _branches.put(newBranchName, remoteHead.commitID());
+        setBranchHead(newBranchName, remoteHead.commitID());
         serializeTree();
+        event.finish("fetch", remoteName, remoteBranch, fetched.size(),
+                     partial);
+    }
+
+    /** Exit unless the repository in directory REMOTEGIT names objects
+     * by the same digest as this one, so that their objects can be copied
+     * as they are. */
+    private static void checkObjectFormat(File remoteGit) {
+        if (!Utils.objectFormat(remoteGit.getPath())
+            .equals(Utils.objectFormat())) {
+            System.out.println("Remote repository uses a different object "
+                               + "format.");
+            System.exit(0);
+        }
+    }
+
+    /** Copy the trees of commit C, with their blobs unless WITHBLOBS is
+     * false, from repository directory FROM to repository directory TO.
+     * Subtrees TO already has are not visited. */
+    private void copySnapshot(Commit c, String from, String to,
+                              boolean withBlobs) {
+        if (c.hasTree()) {
+            Utils.copyTree(from, to, c.tree(), withBlobs);
+        } else if (withBlobs) {
+            for (String blobID : c.filesInCommit().values()) {
+                Utils.copyBlob(from, to, blobID);
+            }
+        }
     }
 
     /** Execute pull command.
@@ -115,23 +189,13 @@ public class CommitTree implements Serializable {
         Commit last = Utils.getCommit(curHeadCommit());
         HashMap<String, String> lastCFiles = last.filesInCommit();
         Blob b = new Blob(filename);
-        if (!lastCFiles.containsKey(filename)) {
-            _addedArea.put(b.blobname(), b.blobShaID());
-            _removeArea.remove(b.blobname());
+        if (!b.blobShaID().equals(lastCFiles.get(filename))) {
+            _addedArea.put(filename, b.blobShaID());
+            _removeArea.remove(filename);
             b.serializeBlob();
         } else {
-            File thisfile = new File(Utils.workingDirectory() + filename);
-            byte[] curContent = Utils.readContents(thisfile);
-            Blob lastCommitBlob = Utils.getBlob(lastCFiles.get(filename));
-            byte[] lastCommitVersion = lastCommitBlob.blobInByte();
-            if (!Arrays.equals(curContent, lastCommitVersion)) {
-                _addedArea.put(b.blobname(), b.blobShaID());
-                _removeArea.remove(b.blobname());
-                b.serializeBlob();
-            } else {
-                _removeArea.remove(b.blobname());
-                _addedArea.remove(b.blobname());
-            }
+            _removeArea.remove(filename);
+            _addedArea.remove(filename);
         }
         this.serializeTree();
     }
@@ -143,7 +207,7 @@ public class CommitTree implements Serializable {
             System.out.println("A branch with that name already exists.");
             System.exit(0);
         }
-        _branches.put(newBranch, curHeadCommit());
+        _branches.put(newBranch, _branches.get(_curBranch));
     }
 
     /** Remove the branch BRANCHNAME. */
@@ -167,10 +231,9 @@ public class CommitTree implements Serializable {
                     + " delete it or add it first.");
             System.exit(0);
         }
-        Utils.cleanWD();
         Commit destination = Utils.getCommit(fullID);
-        destination.writeAllFiles();
-        _branches.put(curBranch(), commitID);
+        switchTo(destination);
+        setBranchHead(curBranch(), fullID);
         clearStage();
         serializeTree();
     }
@@ -179,25 +242,151 @@ public class CommitTree implements Serializable {
     CommitTree() {
         _branches = new HashMap<>();
         _msg2ID = new HashMap<>();
-        _commits = new HashSet<>();
+        _commits = new IdSet();
         _addedArea = new HashMap<>();
         _removeArea = new HashSet<>();
         _short2Full = new HashMap<>();
         _remotes = new HashMap<>();
+        _promisors = new HashSet<>();
         String initialTime = "Wed Dec 31 16:00:00 1969 -0800";
         Commit firstCommit = new Commit("initial commit", null,
-                null, null, initialTime);
-        String firstID = firstCommit.commitID();
+                null, new HashMap<>(), initialTime);
         _curBranch = "master";
-        _commits.add(firstID);
-        _short2Full.put(firstID.substring(0, 6), firstID);
-        _branches.put("master", firstCommit.commitID());
-        HashSet<String> msginital = new HashSet<>();
-        msginital.add(firstID);
-        _msg2ID.put("initial commit", msginital);
+        setBranchHead("master", firstCommit.commitID());
+        index(ObjectId.parse(firstCommit.commitID()), "initial commit");
         firstCommit.serializeC();
     }
 
+    /** Fields of the serial form, in which repositories were written
+     * before Codec, with IDs as hexadecimal strings. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("_branches", HashMap.class),
+        new ObjectStreamField("_msg2ID", HashMap.class),
+        new ObjectStreamField("_addedArea", HashMap.class),
+        new ObjectStreamField("_removeArea", HashSet.class),
+        new ObjectStreamField("_commits", HashSet.class),
+        new ObjectStreamField("_short2Full", HashMap.class),
+        new ObjectStreamField("_curBranch", String.class),
+        new ObjectStreamField("_remotes", HashMap.class),
+        new ObjectStreamField("_promisors", HashSet.class),
+    };
+
+    /** Read my fields from IN, in their serial form. */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        _curBranch = (String) fields.get("_curBranch", null);
+        _addedArea = (HashMap<String, String>) fields.get("_addedArea", null);
+        _removeArea = (HashSet<String>) fields.get("_removeArea", null);
+        _remotes = (HashMap<String, String>) fields.get("_remotes", null);
+        _promisors = (HashSet<String>) fields.get("_promisors", null);
+        _branches = new HashMap<>();
+        ((HashMap<String, String>) fields.get("_branches", null))
+            .forEach(this::setBranchHead);
+        _commits = new IdSet();
+        for (String id : (HashSet<String>) fields.get("_commits", null)) {
+            _commits.add(ObjectId.parse(id));
+        }
+        _short2Full = new HashMap<>();
+        ((HashMap<String, String>) fields.get("_short2Full", null))
+            .forEach((prefix, id) -> _short2Full.put(
+                Integer.parseInt(prefix, 16), ObjectId.parse(id)));
+        _msg2ID = new HashMap<>();
+        ((HashMap<String, HashSet<String>>) fields.get("_msg2ID", null))
+            .forEach((msg, ids) -> {
+                IdSet set = new IdSet(ids.size());
+                for (String id : ids) {
+                    set.add(ObjectId.parse(id));
+                }
+                _msg2ID.put(msg, set);
+            });
+    }
+
+    /** Write my fields to OUT in their serial form. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("_curBranch", _curBranch);
+        fields.put("_addedArea", _addedArea);
+        fields.put("_removeArea", _removeArea);
+        fields.put("_remotes", _remotes);
+        fields.put("_promisors", _promisors);
+        HashMap<String, String> branches = new HashMap<>();
+        _branches.forEach((name, id) -> branches.put(name, id.toString()));
+        fields.put("_branches", branches);
+        fields.put("_commits", hexes(_commits));
+        HashMap<String, String> short2Full = new HashMap<>();
+        _short2Full.forEach((prefix, id) -> short2Full.put(
+            String.format(PREFIX_FORMAT, prefix), id.toString()));
+        fields.put("_short2Full", short2Full);
+        HashMap<String, HashSet<String>> msg2ID = new HashMap<>();
+        _msg2ID.forEach((msg, ids) -> msg2ID.put(msg, hexes(ids)));
+        fields.put("_msg2ID", msg2ID);
+        out.writeFields();
+    }
+
+    /** Return the hexadecimal forms of IDS. */
+    private static HashSet<String> hexes(IdSet ids) {
+        HashSet<String> result = new HashSet<>();
+        for (ObjectId id : ids) {
+            result.add(id.toString());
+        }
+        return result;
+    }
+
+    /** Read a repository from IN, as written by encode. */
+    CommitTree(Codec.Reader in) throws IOException {
+        _curBranch = in.readString();
+        int branches = in.readSize();
+        _branches = new HashMap<>();
+        for (int i = 0; i < branches; i += 1) {
+            String name = in.readString();
+            _branches.put(name, in.readObjectId());
+        }
+        _commits = in.readIdSet();
+        int prefixes = in.readSize();
+        _short2Full = new HashMap<>();
+        for (int i = 0; i < prefixes; i += 1) {
+            int prefix = Integer.parseInt(in.readString(), 16);
+            _short2Full.put(prefix, in.readObjectId());
+        }
+        int messages = in.readSize();
+        _msg2ID = new HashMap<>();
+        for (int i = 0; i < messages; i += 1) {
+            String msg = in.readString();
+            _msg2ID.put(msg, in.readIdSet());
+        }
+        _addedArea = in.readIdMap(new HashMap<>());
+        _removeArea = in.readStrings(new HashSet<>());
+        _remotes = in.readStringMap();
+        _promisors = in.readStrings(new HashSet<>());
+    }
+
+    /** Write my fields to OUT. */
+    void encode(Codec.Writer out) throws IOException {
+        out.writeString(_curBranch);
+        out.writeInt(_branches.size());
+        for (Map.Entry<String, ObjectId> e : _branches.entrySet()) {
+            out.writeString(e.getKey());
+            out.writeId(e.getValue());
+        }
+        out.writeIdSet(_commits);
+        out.writeInt(_short2Full.size());
+        for (Map.Entry<Integer, ObjectId> e : _short2Full.entrySet()) {
+            out.writeString(String.format(PREFIX_FORMAT, e.getKey()));
+            out.writeId(e.getValue());
+        }
+        out.writeInt(_msg2ID.size());
+        for (Map.Entry<String, IdSet> e : _msg2ID.entrySet()) {
+            out.writeString(e.getKey());
+            out.writeIdSet(e.getValue());
+        }
+        out.writeIdMap(_addedArea);
+        out.writeStrings(_removeArea);
+        out.writeStringMap(_remotes);
+        out.writeStrings(_promisors);
+    }
+
     /** Initialize a new Commit Tree as repository.
      * @return initialized tree*/
     static CommitTree init() {
@@ -208,28 +397,26 @@ public class CommitTree implements Serializable {
     /** Checkout file FILENAME from current commit. */
     void checkoutHeadFile(String filename) {
         Commit curBHead = Utils.getCommit(curHeadCommit());
-        HashMap<String, String> lastCFile = curBHead.filesInCommit();
-        if (!lastCFile.containsKey(filename)) {
+        String lastVersionID = curBHead.blobOf(filename);
+        if (lastVersionID == null) {
             System.out.println("File does not exist in that commit.");
             System.exit(0);
         }
-        String lastVersionID = lastCFile.get(filename);
         Blob lastVerion = Utils.getBlob(lastVersionID);
-        lastVerion.writeIntoDirectory();
+        lastVerion.writeIntoDirectory(filename);
     }
 
 
     /** Checkout FILENAME from commit with short code ID. */
     void checkoutCommitFile(String id, String filename) {
         Commit thatCommit = Utils.getCommit(findFullID(id));
-        HashMap<String, String> files = thatCommit.filesInCommit();
-        if (!files.containsKey(filename)) {
+        String blobID = thatCommit.blobOf(filename);
+        if (blobID == null) {
             System.out.println("File does not exist in that commit.");
             System.exit(0);
         }
-        String blobID = files.get(filename);
         Blob thatVersion = Utils.getBlob(blobID);
-        thatVersion.writeIntoDirectory();
+        thatVersion.writeIntoDirectory(filename);
     }
 
 
@@ -248,26 +435,63 @@ public class CommitTree implements Serializable {
                     + " delete it or add it first.");
             System.exit(0);
         }
-        Commit resultBHead = Utils.getCommit(_branches.get(branchName));
-        Utils.cleanWD();
-        resultBHead.writeAllFiles();
+        Commit resultBHead = Utils.getCommit(branchHead(branchName));
+        switchTo(resultBHead);
         _curBranch = branchName;
         clearStage();
         serializeTree();
     }
 
 
+    /** Make the working directory hold the files of commit TARGET instead
+     * of those of the current head commit and the stage. Only the paths
+     * in subtrees that differ between the two commits, and the staged
+     * paths, are written or deleted. Every deletion, with the pruning of
+     * the directories it empties, comes before the writes, so that a file
+     * can replace a directory or a directory a file. Assumes there are no
+     * untracked files in the way. */
+    void switchTo(Commit target) {
+        Commit head = Utils.getCommit(curHeadCommit());
+        HashMap<String, String[]> changes = new HashMap<>();
+        Tree.diff(head.tree(), target.tree(), "", changes);
+        HashSet<String> staged = new HashSet<>(_addedArea.keySet());
+        staged.addAll(_removeArea);
+        for (String path : staged) {
+            if (!changes.containsKey(path)) {
+                changes.put(path, new String[] {null, target.blobOf(path)});
+            }
+        }
+        HashSet<String> needed = new HashSet<>();
+        for (String[] pair : changes.values()) {
+            if (pair[1] != null) {
+                needed.add(pair[1]);
+            }
+        }
+        Utils.prefetchBlobs(needed);
+        for (Map.Entry<String, String[]> e : changes.entrySet()) {
+            if (e.getValue()[1] == null) {
+                Utils.deleteFromWD(e.getKey());
+            }
+        }
+        for (Map.Entry<String, String[]> e : changes.entrySet()) {
+            String blobID = e.getValue()[1];
+            if (blobID != null) {
+                Utils.getBlob(blobID).writeIntoDirectory(e.getKey());
+            }
+        }
+    }
+
     /** Return the list of untracked files. */
     HashSet<String> untrackedFiles() {
         HashSet<String> result = new HashSet<>();
-        List<String> wdFiles = Utils.plainFilenamesIn(Utils.workingDirectory());
+        Commit curCommit = Utils.getCommit(curHeadCommit());
+        HashMap<String, String> curCFiles = curCommit.filesInCommit();
+        List<String> wdFiles = scanWD(curCFiles);
         for (String f : wdFiles) {
             if (_removeArea.contains(f)) {
                 result.add(f);
             }
         }
-        Commit curCommit = Utils.getCommit(curHeadCommit());
-        HashMap<String, String> curCFiles = curCommit.filesInCommit();
         for (String f : wdFiles) {
             if (!_addedArea.containsKey(f) && !curCFiles.containsKey(f)) {
                 result.add(f);
@@ -275,17 +499,13 @@ public class CommitTree implements Serializable {
         }
         for (String f : wdFiles) {
             if (_addedArea.containsKey(f)) {
-                Blob addedBlob = Utils.getBlob(_addedArea.get(f));
-                byte[] addedVersion = addedBlob.blobInByte();
-                byte[] curVersion = Utils.readContents(new File(f));
-                if (!Arrays.equals(curVersion, addedVersion)) {
+                String curVersion = Blob.contentID(new File(f));
+                if (!curVersion.equals(_addedArea.get(f))) {
                     result.add(f);
                 }
             } else if (curCFiles.containsKey(f)) {
-                Blob lastCBlob = Utils.getBlob(curCFiles.get(f));
-                byte[] lastCVersion = lastCBlob.blobInByte();
-                byte[] curVersion = Utils.readContents(new File(f));
-                if (!Arrays.equals(lastCVersion, curVersion)) {
+                String curVersion = Blob.contentID(new File(f));
+                if (!curVersion.equals(curCFiles.get(f))) {
                     result.add(f);
                 }
             }
@@ -297,28 +517,43 @@ public class CommitTree implements Serializable {
      * */
     public void commit(String msg) {
         String newCommit = commit(msg, curHeadCommit(), null);
-        _commits.add(newCommit);
-        _short2Full.put(newCommit.substring(0, 6), newCommit);
-        _msg2ID.computeIfAbsent(msg, k -> new HashSet<>());
-        _msg2ID.get(msg).add(newCommit);
-        _branches.put(_curBranch, newCommit);
+        record(newCommit, msg);
+        setBranchHead(_curBranch, newCommit);
     }
 
 
 
+    /** Record the new commit NEWCOMMIT, with message MSG, in the indices
+     * of commits and in the history of the paths it changed. */
+    private void record(String newCommit, String msg) {
+        index(ObjectId.parse(newCommit), msg);
+        PathHistory.record(Collections.singletonList(newCommit), _commits);
+    }
+
+    /** Add the commit with ID ID and message MSG to the indices of
+     * commits. */
+    private void index(ObjectId id, String msg) {
+        _commits.add(id);
+        _short2Full.put(prefix(id), id);
+        _msg2ID.computeIfAbsent(msg, k -> new IdSet()).add(id);
+    }
+
+    /** Return the first three bytes of ID, by which _short2Full finds
+     * it. */
+    private static int prefix(ObjectId id) {
+        return (int) (id.hi() >>> PREFIX_SHIFT);
+    }
+
     /** Execute automatic commit after merging.
      * @param otherBranch name of other branch
      * @param conflict if the merge met a conflict
      * */
     void mergecommit(String otherBranch, boolean conflict) {
         String msg = "Merged " + otherBranch + " into " + _curBranch + ".";
-        String parent2 = _branches.get(otherBranch);
+        String parent2 = branchHead(otherBranch);
         String newCommit = commit(msg, curHeadCommit(), parent2);
-        _commits.add(newCommit);
-        _short2Full.put(newCommit.substring(0, 6), newCommit);
-        _msg2ID.computeIfAbsent(msg, k -> new HashSet<>());
-        _msg2ID.get(msg).add(newCommit);
-        _branches.put(_curBranch, newCommit);
+        record(newCommit, msg);
+        setBranchHead(_curBranch, newCommit);
         if (conflict) {
             System.out.println("Encountered a merge conflict.");
         }
@@ -331,28 +566,14 @@ public class CommitTree implements Serializable {
      * */
     public String commit(String msg, String parent1, String parent2) {
         Commit par = Utils.getCommit(curHeadCommit());
-        HashMap<String, String> parentBlob = par.filesInCommit();
-        HashMap<String, String> addArea = addArea();
-        HashSet<String> removeArea = removeArea();
-        HashSet<Blob> myBlobs = new HashSet<>();
-        for (String s : parentBlob.keySet()) {
-            if (removeArea.contains(s)) {
-                continue;
-            }
-            if (addArea.containsKey(s)) {
-                myBlobs.add(Utils.getBlob(addArea.get(s)));
-                continue;
-            }
-            myBlobs.add(Utils.getBlob(parentBlob.get(s)));
-        }
-        for (String s : addArea.keySet()) {
-            if (parentBlob.keySet().contains(s)) {
-                continue;
-            }
-            myBlobs.add(Utils.getBlob(addArea.get(s)));
+        HashMap<String, String> changes = new HashMap<>();
+        for (String s : removeArea()) {
+            changes.put(s, null);
         }
+        changes.putAll(addArea());
+        String tree = Tree.apply(par.tree(), changes);
         String time = Utils.formatt().format(new Date());
-        Commit thisC = new Commit(msg, parent1, parent2, myBlobs, time);
+        Commit thisC = new Commit(msg, parent1, parent2, tree, time);
         return thisC.commitID();
     }
 
@@ -361,19 +582,18 @@ public class CommitTree implements Serializable {
      * */
     void preMergeCheck(String givenBranch) {
         Commit curHead = Utils.getCommit(curHeadCommit());
-        Commit givenHead = Utils.getCommit(_branches.get(givenBranch));
+        Commit givenHead = Utils.getCommit(branchHead(givenBranch));
         Commit splitPoint = Utils.getCommit(findSplitPoint(givenBranch));
         if (splitPoint.commitID().equals(givenHead.commitID())) {
             System.out.println("Given branch is an ancestor "
                     + "of the current branch.");
-            _branches.put(givenBranch, curHeadCommit());
+            _branches.put(givenBranch, _branches.get(_curBranch));
             serializeTree();
             return;
         } else if (splitPoint.commitID().equals(curHead.commitID())) {
             System.out.println("Current branch fast-forwarded.");
-            _branches.put(_curBranch, givenHead.commitID());
-            Utils.cleanWD();
-            givenHead.writeAllFiles();
+            switchTo(givenHead);
+            setBranchHead(_curBranch, givenHead.commitID());
             serializeTree();
             return;
         }
@@ -381,169 +601,299 @@ public class CommitTree implements Serializable {
     }
 
 
-    /** Execute merge command.
+    /** Execute merge command. Only the paths the given head changed since
+     * the split point can need merging; MergeTree.plan finds them, and
+     * follows renames, from diffs of the sorted trees. They are merged
+     * in parallel: each decision only reads blobs and writes its own
+     * file, and what it stages is collected in a concurrent map that is
+     * copied into the stage afterwards. Files are deleted from the
+     * working directory first, one at a time, since a deletion may prune
+     * a directory, or leave room for one, that another path is written
+     * to.
      * @param givenBranch the name of given branch
      * */
     void merge(String givenBranch) {
+        GitletEvents.Merge event = new GitletEvents.Merge();
+        event.begin();
         Commit curHead = Utils.getCommit(curHeadCommit());
-        Commit givenHead = Utils.getCommit(_branches.get(givenBranch));
+        Commit givenHead = Utils.getCommit(branchHead(givenBranch));
         Commit splitPoint = Utils.getCommit(findSplitPoint(givenBranch));
-        boolean conflict = false;
-        HashMap<String, String> splitF = splitPoint.filesInCommit();
-        HashMap<String, String> givenF = givenHead.filesInCommit();
-        HashMap<String, String> curF = curHead.filesInCommit();
-        for (String f : splitF.keySet()) {
-            if (givenF.containsKey(f) & curF.containsKey(f)) {
-                if (!givenF.get(f).equals(splitF.get(f))
-                        & curF.get(f).equals(splitF.get(f))) {
-                    Blob givenVerion = Utils.getBlob(givenF.get(f));
-                    givenVerion.writeIntoDirectory();
-                    _addedArea.put(f, givenVerion.blobShaID());
-                } else if (givenF.get(f).equals(splitF.get(f))
-                        & !curF.get(f).equals(splitF.get(f))) {
-                    continue;
-                } else if (!givenF.get(f).equals(splitF.get(f))
-                        & !curF.get(f).equals(splitF.get(f))) {
-                    if (curF.get(f).equals(givenF.get(f))) {
-                        continue;
-                    } else {
-                        writeConflict(f, curF.get(f), givenF.get(f));
-                        conflict = true;
-                    }
-                }
-            } else if (!givenF.containsKey(f) & curF.containsKey(f)) {
-                if (splitF.get(f).equals(curF.get(f))) {
-                    Utils.restrictedDelete(f);
-                    _removeArea.add(f);
-                } else {
-                    writeConflict(f, curF.get(f), givenF.get(f));
-                    conflict = true;
-                }
-            } else if (givenF.containsKey(f) & !curF.containsKey(f)) {
-                if (splitF.get(f).equals(givenF.get(f))) {
-                    continue;
-                } else {
-                    writeConflict(f, curF.get(f), givenF.get(f));
-                    conflict = true;
-                }
+        prefetch(splitPoint, curHead, givenHead);
+        List<String[]> paths =
+            MergeTree.plan(Tree.diff(splitPoint.tree(), curHead.tree()),
+                           Tree.diff(splitPoint.tree(), givenHead.tree()));
+        ArrayList<String[]> writes = new ArrayList<>();
+        for (String[] p : paths) {
+            if (MergeTree.resolve(p[1], p[2], p[3])
+                == MergeTree.Action.REMOVE) {
+                Utils.deleteFromWD(p[0]);
+                _removeArea.add(p[0]);
+            } else {
+                writes.add(p);
             }
         }
-        for (String f : givenF.keySet()) {
-            if (!splitF.containsKey(f)) {
-                if (curF.containsKey(f)) {
-                    if (!curF.get(f).equals(givenF.get(f))) {
-                        writeConflict(f, curF.get(f), givenF.get(f));
-                        conflict = true;
-                    }
-                } else if (!curF.containsKey(f)) {
-                    Blob givenBlob = Utils.getBlob(givenF.get(f));
-                    givenBlob.writeIntoDirectory();
-                    _addedArea.put(f, givenBlob.blobShaID());
-                }
+        Map<String, String> added = new ConcurrentHashMap<>();
+        boolean conflict = writes.parallelStream()
+            .map(p -> mergePath(p[0], p[1], p[2], p[3], added))
+            .reduce(false, Boolean::logicalOr);
+        _addedArea.putAll(added);
+        event.finish(givenBranch, paths.size(), conflict);
+        mergecommit(givenBranch, conflict);
+    }
+
+    /** Merge path F, whose versions at the split point, in the current
+     * head and in the given head are the blobs SPLITID, CURID and
+     * GIVENID, any of which may be null if F is absent there, unless F
+     * is to be removed, which merge does itself. Write the result into
+     * the working directory, putting what is to be staged into ADDED.
+     * @return true if F is in conflict. */
+    private boolean mergePath(String f, String splitID, String curID,
+                              String givenID, Map<String, String> added) {
+        switch (MergeTree.resolve(splitID, curID, givenID)) {
+        case TAKE:
+            Blob givenBlob = Utils.getBlob(givenID);
+            givenBlob.writeIntoDirectory(f);
+            added.put(f, givenBlob.blobShaID());
+            return false;
+        case MERGE:
+            return mergeFile(f, splitID, curID, givenID, added);
+        case CONFLICT:
+            writeConflict(f, curID, givenID, added);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+
+    /** Merge the heads of GIVENBRANCHES into the current branch at once,
+     * as one commit whose parents are the current head and theirs. The
+     * split points of the current head with each of them are found by
+     * one walk of their history. Each branch is then merged in turn, from
+     * its own split point, in the object store, and the working directory
+     * is written once, at the end. A branch whose head the current head
+     * or another of the branches already contains is left out. */
+    void octopusMerge(List<String> givenBranches) {
+        ArrayList<String> heads = new ArrayList<>();
+        heads.add(curHeadCommit());
+        for (String branch : givenBranches) {
+            heads.add(branchHead(branch));
+        }
+        MergeBases bases =
+            new MergeBases(heads, String.join(" ", givenBranches));
+        ArrayList<Integer> merged = new ArrayList<>();
+        for (int j = 1; j < heads.size(); j += 1) {
+            if (!contained(bases, j, heads.size())) {
+                merged.add(j);
             }
         }
-        mergecommit(givenBranch, conflict);
+        if (merged.isEmpty()) {
+            System.out.println("Given branch is an ancestor "
+                    + "of the current branch.");
+            return;
+        } else if (merged.size() == 1 && bases.reaches(merged.get(0), 0)) {
+            System.out.println("Current branch fast-forwarded.");
+            moveHead(heads.get(merged.get(0)), Collections.emptyList());
+            return;
+        }
+        ArrayList<Commit> read = new ArrayList<>();
+        read.add(Utils.getCommit(heads.get(0)));
+        for (int j : merged) {
+            read.add(Utils.getCommit(heads.get(j)));
+            read.add(Utils.getCommit(bases.base(j)));
+        }
+        prefetch(read.toArray(new Commit[0]));
+        ArrayList<String> parents = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        parents.add(heads.get(0));
+        String tree = read.get(0).tree();
+        ArrayList<MergeTree.Conflict> conflicts = new ArrayList<>();
+        for (int j : merged) {
+            parents.add(heads.get(j));
+            names.add(givenBranches.get(j - 1));
+            tree = MergeTree.mergeTrees(Utils.getCommit(bases.base(j)).tree(),
+                                        tree,
+                                        Utils.getCommit(heads.get(j)).tree(),
+                                        conflicts);
+        }
+        String msg = "Merged " + listOf(names) + " into " + _curBranch + ".";
+        String time = Utils.formatt().format(new Date());
+        String result = new Commit(msg, parents, tree, time).commitID();
+        record(result, msg);
+        moveHead(result, conflicts);
+    }
+
+    /** Return true if head J of those BASES compares, of which there are
+     * N, is contained in another: in the current head, in a head other
+     * than itself, or in an earlier head equal to it. */
+    private static boolean contained(MergeBases bases, int j, int n) {
+        for (int i = 0; i < n; i += 1) {
+            if (i != j && bases.reaches(i, j)
+                && (i < j || !bases.reaches(j, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return NAMES as a list in words, such as "a, b and c". */
+    private static String listOf(List<String> names) {
+        int last = names.size() - 1;
+        if (last == 0) {
+            return names.get(0);
+        }
+        return String.join(", ", names.subList(0, last)) + " and "
+            + names.get(last);
     }
 
+    /** Merge the changes to FILENAME from its split point version SPLITID
+     * to its given version GIVENID into its current version CURID, line
+     * by line as MergeTree.mergeLines does, and write the result into the
+     * working directory, putting its blob ID into ADDED. Binary files
+     * conflict as a whole.
+     * @return true if some lines were in conflict. */
+    boolean mergeFile(String fileName, String splitID, String curID,
+                      String givenID, Map<String, String> added) {
+        ArrayList<MergeTree.Conflict> conflicts = new ArrayList<>();
+        Blob result = MergeTree.mergeLines(fileName, splitID, curID,
+                                           givenID, conflicts);
+        if (result == null) {
+            writeConflict(fileName, curID, givenID, added);
+            return true;
+        }
+        result.writeIntoDirectory(fileName);
+        added.put(fileName, result.blobShaID());
+        return !conflicts.isEmpty();
+    }
 
     /** Write the conflict content into the file while a merge conflict
-     * occurs.
+     * occurs. The two versions are streamed from their blobs into the
+     * working file and the new blob at once, so a conflict on a large
+     * file is never held in memory whole.
      * @param fileName name of the conflict file
      * @param curBlobID current blob version
      * @param givenBlobID given branch blob version
+     * @param added where the ID of the new blob is put
      * */
-    void writeConflict(String fileName, String curBlobID, String givenBlobID) {
-        StringBuilder content = new StringBuilder();
-        File path = new File(fileName);
-        content.append("<<<<<<< HEAD\n");
-        if (curBlobID != null & givenBlobID != null) {
-            Blob curBlob = Utils.getBlob(curBlobID);
-            Blob givenBlob = Utils.getBlob(givenBlobID);
-            content.append(curBlob.blobInString());
-            content.append("=======\n");
-            content.append(givenBlob.blobInString());
-        } else if (curBlobID != null) {
-            Blob curBlob = Utils.getBlob(curBlobID);
-            content.append(curBlob.blobInString());
-            content.append("=======\n");
-        } else if (givenBlobID != null) {
-            Blob givenBlob = Utils.getBlob(givenBlobID);
-            content.append("=======\n");
-            content.append(givenBlob.blobInString());
-        }
-
-        content.append(">>>>>>>\n");
-        Utils.writeContents(path, content.toString());
-        Blob newContent = new Blob(fileName);
-        _addedArea.put(fileName, newContent.blobShaID());
+    void writeConflict(String fileName, String curBlobID, String givenBlobID,
+                       Map<String, String> added) {
+        Blob newContent;
+        try (InputStream content =
+                 MergeTree.conflictStream(curBlobID, givenBlobID)) {
+            newContent = new Blob(content, fileName);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        newContent.serializeBlob();
+        added.put(fileName, newContent.blobShaID());
     }
 
-
     /** Find the right split point of current head and head of the GIVENBRANCH.
      * Use ALLANCESTOR to first construct the collection of all ancestors of
      * the branch which we don't care about its distance to split point,
      * then use breadth first search for the branch that we care, until
-     * we get a node that is contained in the first collection.
+     * we get a node that is contained in the first collection. Commits
+     * read by the first walk are not read again by the second.
      * @return ID of the split point. */
     String findSplitPoint(String givenBranch) {
-        Commit curHead = Utils.getCommit(curHeadCommit());
-        Commit givenHead = Utils.getCommit(_branches.get(givenBranch));
-        HashSet<String> givenAncestor = allAncestors(givenHead.commitID());
-        HashSet<String> traveled = new HashSet<>();
-        ArrayList<Commit> storing = new ArrayList<>();
-        storing.add(curHead);
+        return splitPoint(curHeadCommit(), branchHead(givenBranch),
+                          givenBranch);
+    }
+
+    /** Return the ID of the split point of the commits with IDs CURID and
+     * GIVENID, found as for findSplitPoint. GIVENNAME names the given
+     * commit in the recorded event. */
+    static String splitPoint(String curID, String givenID, String givenName) {
+        GitletEvents.SplitPoint event = new GitletEvents.SplitPoint();
+        event.begin();
+        IdMap<Commit> read = new IdMap<>();
+        IdSet givenAncestor = allAncestors(ObjectId.parse(givenID), read);
+        IdSet traveled = new IdSet();
+        ArrayDeque<ObjectId> storing = new ArrayDeque<>();
+        storing.add(ObjectId.parse(curID));
         while (!storing.isEmpty()) {
-            Commit cur = storing.get(0);
-            storing.remove(0);
-            if (traveled.contains(cur.commitID())) {
+            ObjectId cur = storing.poll();
+            if (!traveled.add(cur)) {
                 continue;
             }
-            if (givenAncestor.contains(cur.commitID())) {
-                return cur.commitID();
-            }
-            for (Commit par : parents(cur)) {
-                storing.add(par);
+            if (givenAncestor.contains(cur)) {
+                String result = cur.toString();
+                event.finish(givenName, result, read.size());
+                return result;
             }
-            traveled.add(cur.commitID());
+            addParents(commit(cur, read), storing);
         }
         throw new GitletException("No common ancestor");
     }
 
     /** Find all ancestors of the given commit COMMITID.
-     * @return Hashset of all ancestor. */
-    HashSet<String> allAncestors(String commitID) {
-        HashSet<String> result = new HashSet<>();
-        Commit self = Utils.getCommit(commitID);
-        Stack<Commit> storing = new Stack<>();
-        storing.push(self);
-        while (!storing.empty()) {
-            Commit cur = storing.pop();
-            result.add(cur.commitID());
-            for (Commit par : parents(cur)) {
-                if (!result.contains(par.commitID())) {
-                    storing.push(par);
-                }
+     * @return set of the IDs of all ancestors. */
+    IdSet allAncestors(String commitID) {
+        return allAncestors(ObjectId.parse(commitID), new IdMap<>());
+    }
+
+    /** Return the IDs of START and all its ancestors, adding every commit
+     * read on the way to READ and reading none that READ already has. */
+    private static IdSet allAncestors(ObjectId start, IdMap<Commit> read) {
+        IdSet result = new IdSet();
+        ArrayDeque<ObjectId> storing = new ArrayDeque<>();
+        storing.push(start);
+        while (!storing.isEmpty()) {
+            ObjectId cur = storing.pop();
+            if (result.add(cur)) {
+                addParents(commit(cur, read), storing);
             }
         }
         return result;
     }
 
-    /** Return HashSet of all parents of SELF. */
-    HashSet<Commit> parents(Commit self) {
-        HashSet<Commit> result = new HashSet<>();
-        if (self.parent1() != null) {
-            result.add(Utils.getCommit(self.parent1()));
-        }
-        if (self.parent2() != null) {
-            result.add(Utils.getCommit(self.parent2()));
+    /** Return the commit ID, from READ if it has been read already, and
+     * otherwise from the store, recording it in READ. */
+    static Commit commit(ObjectId id, IdMap<Commit> read) {
+        Commit result = read.get(id);
+        if (result == null) {
+            result = Utils.getCommit(id.toString());
+            read.put(id, result);
         }
         return result;
     }
 
+    /** Add the IDs of the parents of C to the end of QUEUE, in order. */
+    private static void addParents(Commit c, ArrayDeque<ObjectId> queue) {
+        if (c.parent1() != null) {
+            queue.add(c.parent1Id());
+        }
+        if (c.parent2() != null) {
+            queue.add(c.parent2Id());
+        }
+        for (String parent : c.moreParents()) {
+            queue.add(ObjectId.parse(parent));
+        }
+    }
+
+    /** Fetch in one batch every blob of COMMITS that a partial fetch
+     * left in a promisor remote, before the commits are written out. */
+    void prefetch(Commit... commits) {
+        if (promisors().isEmpty()) {
+            return;
+        }
+        HashSet<String> blobIDs = new HashSet<>();
+        for (Commit c : commits) {
+            blobIDs.addAll(c.filesInCommit().values());
+        }
+        Utils.prefetchBlobs(blobIDs);
+    }
+
 
 
     /** Print out status of repo. */
     void status() {
+        status(modifiedStatus(), untrackStatus());
+    }
+
+    /** Print out status of repo, with MODIFIED as the entries of the
+     *  modifications section and UNTRACKED as the untracked files. */
+    void status(Collection<String> modified, Collection<String> untracked) {
         StringBuilder build = new StringBuilder();
         HashMap<String, String> addArea = addArea();
         HashSet<String> removeArea = removeArea();
@@ -557,8 +907,14 @@ public class CommitTree implements Serializable {
         }
         build.append("\n");
         build.append("=== Staged Files ===\n");
+        Map<String, String> renamedFrom = stagedRenames();
         for (String file : Utils.sortString(addArea.keySet())) {
-            build.append(file).append("\n");
+            build.append(file);
+            if (renamedFrom.containsKey(file)) {
+                build.append(" (renamed from ")
+                    .append(renamedFrom.get(file)).append(")");
+            }
+            build.append("\n");
         }
         build.append("\n");
         build.append("=== Removed Files ===\n");
@@ -567,48 +923,95 @@ public class CommitTree implements Serializable {
         }
         build.append("\n");
         build.append("=== Modifications Not Staged For Commit ===\n");
-        for (String f : modifiedStatus()) {
+        for (String f : Utils.sortString(modified)) {
             build.append(f).append("\n");
         }
         build.append("\n");
         build.append("=== Untracked Files ===\n");
-        for (String f : untrackStatus()) {
+        for (String f : Utils.sortString(untracked)) {
             build.append(f).append("\n");
         }
         System.out.println(build.toString());
     }
 
 
+    /** Return a map from each file staged for addition that the head
+     * commit does not track to the file staged for removal it was renamed
+     * from, if Renames finds one. */
+    private Map<String, String> stagedRenames() {
+        HashMap<String, String> result = new HashMap<>();
+        if (_removeArea.isEmpty() || _addedArea.isEmpty()) {
+            return result;
+        }
+        Commit head = Utils.getCommit(curHeadCommit());
+        HashMap<String, String[]> changes = new HashMap<>();
+        for (String file : _removeArea) {
+            String blobID = head.blobOf(file);
+            if (blobID != null) {
+                changes.put(file, new String[] {blobID, null});
+            }
+        }
+        for (Map.Entry<String, String> e : _addedArea.entrySet()) {
+            if (head.blobOf(e.getKey()) == null) {
+                changes.put(e.getKey(), new String[] {null, e.getValue()});
+            }
+        }
+        for (Map.Entry<String, String> e
+                 : Renames.detect(changes).entrySet()) {
+            result.put(e.getValue(), e.getKey());
+        }
+        return result;
+    }
+
     /** Return the list of all filenames that satisfy the section
      *  modified in status. */
     HashSet<String> modifiedStatus() {
+        Commit head = Utils.getCommit(curHeadCommit());
+        HashMap<String, String> latest = head.filesInCommit();
+        HashSet<String> present = new HashSet<>(scanWD(latest));
+        HashSet<String> paths = new HashSet<>(present);
+        paths.addAll(latest.keySet());
+        return modifiedStatus(head, paths, present);
+    }
+
+    /** Return the entries of the modifications section of status for
+     *  those of PATHS that have one, where HEAD is the current head
+     *  commit and PRESENT holds the paths among PATHS that are files in
+     *  the working directory. */
+    HashSet<String> modifiedStatus(Commit head, Collection<String> paths,
+                                   Set<String> present) {
         HashSet<String> result = new HashSet<>();
-        HashMap<String, String> latest
-                = Utils.getCommit(curHeadCommit()).filesInCommit();
         HashMap<String, String> addArea = addArea();
-        HashSet<String> removeArea = removeArea();
-        for (String f : Utils.wdFiles()) {
+        for (String f : paths) {
             File path = new File(f);
-            if (addArea.containsKey(f)) {
-                Blob added = Utils.getBlob(addArea.get(f));
-                byte[] addV = added.blobInByte();
-                byte[] curV = Utils.readContents(path);
-                if (!Arrays.equals(addV, curV)) {
+            if (!present.contains(f)) {
+                if (!_removeArea.contains(f) && head.blobOf(f) != null) {
+                    result.add(f + " (deleted)");
+                }
+            } else if (addArea.containsKey(f)) {
+                if (!Blob.contentID(path).equals(addArea.get(f))) {
                     result.add(f + " (modified)");
                 }
-            } else if (latest.containsKey(f)) {
-                Blob curB = Utils.getBlob(latest.get(f));
-                byte[] curV = curB.blobInByte();
-                byte[] newV = Utils.readContents(path);
-                if (!Arrays.equals(curV, newV)) {
+            } else if (head.blobOf(f) != null) {
+                if (!Blob.contentID(path).equals(head.blobOf(f))) {
                     result.add(f + " (modified)");
                 }
             }
         }
-        ArrayList<String> allF = Utils.wdFiles();
-        for (String f : latest.keySet()) {
-            if (!allF.contains(f) & !_removeArea.contains(f)) {
-                result.add(f + " (deleted)");
+        return result;
+    }
+
+    /** Return the paths of the files in the working directory that are
+     * not ignored, followed by those that are ignored but tracked in
+     * LATEST or staged, since ignore rules only hide untracked files. */
+    private List<String> scanWD(Map<String, String> latest) {
+        ArrayList<String> result = Utils.wdFiles();
+        IgnoreRules rules = Utils.ignoreRules();
+        HashSet<String> tracked = new HashSet<>(latest.keySet());
+        tracked.addAll(_addedArea.keySet());
+        for (String f : tracked) {
+            if (rules.ignoredPath(f) && new File(f).isFile()) {
+                result.add(f);
             }
         }
         return result;
@@ -617,26 +1020,367 @@ public class CommitTree implements Serializable {
     /** Return the list of all filenames that satisfy the section
      *  modified in status. */
     HashSet<String> untrackStatus() {
+        Commit head = Utils.getCommit(curHeadCommit());
+        /* Flatten once, so that the lookups per file read no trees. */
+        head.filesInCommit();
+        return untrackStatus(head, Utils.wdFiles());
+    }
+
+    /** Return those of PATHS, files in the working directory that the
+     *  ignore rules do not hide, that are untracked with respect to the
+     *  current head commit HEAD and the stage. */
+    HashSet<String> untrackStatus(Commit head, Collection<String> paths) {
         HashSet<String> result = new HashSet<>();
-        HashMap<String, String> latest
-                = Utils.getCommit(curHeadCommit()).filesInCommit();
         HashMap<String, String> addArea = addArea();
-        for (String f : Utils.wdFiles()) {
-            if (!latest.containsKey(f) & !addArea.containsKey(f)) {
+        for (String f : paths) {
+            if (head.blobOf(f) == null & !addArea.containsKey(f)) {
                 result.add(f);
             }
         }
         return result;
     }
 
+    /** Rewrite every stored blob under its content-only ID, point all
+     * commit manifests and the stage at the new IDs, store the trees of
+     * commits written before trees were introduced, and report how much
+     * storage the deduplication saved. Commit IDs are left unchanged, so
+     * old blobs that stored trees still refer to are kept. */
+    void migrateBlobs() {
+        File blobDir = new File(Utils.blobObjectDir());
+        HashMap<String, String> old2new = new HashMap<>();
+        long before = 0, after = 0;
+        for (String oldID : Utils.plainFilenamesIn(blobDir)) {
+            File oldFile = new File(blobDir, oldID);
+            before += oldFile.length();
+            Blob rewritten = new Blob(Utils.getBlob(oldID).blobInByte());
+            rewritten.serializeBlob();
+            old2new.put(oldID, rewritten.blobShaID());
+        }
+        HashSet<String> inTrees = new HashSet<>();
+        List<String> trees = Utils.plainFilenamesIn(Utils.treeObjectDir());
+        if (trees != null) {
+            for (String treeID : trees) {
+                inTrees.addAll(Utils.getTree(treeID).files().values());
+            }
+        }
+        for (ObjectId commitID : _commits) {
+            Commit c = Utils.getCommit(commitID.toString());
+            c.remapBlobs(old2new);
+            c.storeTree();
+        }
+        for (Map.Entry<String, String> e : _addedArea.entrySet()) {
+            if (old2new.containsKey(e.getValue())) {
+                e.setValue(old2new.get(e.getValue()));
+            }
+        }
+        for (String oldID : old2new.keySet()) {
+            String newID = old2new.get(oldID);
+            if (newID.equals(oldID)) {
+                continue;
+            } else if (inTrees.contains(oldID)) {
+                after += new File(blobDir, oldID).length();
+            } else {
+                new File(blobDir, oldID).delete();
+            }
+        }
+        HashSet<String> distinct = new HashSet<>(old2new.values());
+        for (String newID : distinct) {
+            after += new File(blobDir, newID).length();
+        }
+        System.out.printf("Rewrote %d blobs into %d objects, "
+                + "saving %d bytes.%n", old2new.size(), distinct.size(),
+                before - after);
+    }
+
+    /** Rewrite every object of this repository that was stored by Java
+     * serialization in the binary encoding of Codec, store the trees of
+     * commits written before trees were introduced, and report how many
+     * objects were rewritten and how much smaller they became. Chunks are
+     * raw bytes and are left alone. */
+    void convertObjects() {
+        long before = 0, after = 0;
+        int converted = 0;
+        ArrayList<File> files = new ArrayList<>();
+        for (String dir : new String[] {Utils.commitObjectDir(),
+                                        Utils.blobObjectDir(),
+                                        Utils.treeObjectDir()}) {
+            File[] stored = new File(dir).listFiles();
+            if (stored != null) {
+                files.addAll(Arrays.asList(stored));
+            }
+        }
+        files.add(new File(Utils.repoLoc()));
+        for (File f : files) {
+            byte[] bytes = Utils.readContents(f);
+            if (!Codec.isLegacy(bytes)) {
+                continue;
+            }
+            byte[] encoded =
+                Codec.encode(Codec.decode(bytes, Serializable.class));
+            Utils.writeContents(f, encoded);
+            before += bytes.length;
+            after += encoded.length;
+            converted += 1;
+        }
+        for (ObjectId commitID : _commits) {
+            Utils.getCommit(commitID.toString()).storeTree();
+        }
+        System.out.printf("Converted %d objects from %d bytes to %d "
+                + "bytes.%n", converted, before, after);
+    }
+
+    /** Delete the stored objects that no branch and nothing staged refers
+     * to, except those modified within the last GRACE seconds, drop the
+     * commits deleted from the commit indices, and report what was
+     * reclaimed. */
+    void gc(long grace) {
+        GarbageCollector collector = new GarbageCollector(this, grace);
+        collector.mark();
+        collector.sweep();
+        ArrayList<ObjectId> removed = new ArrayList<>();
+        for (String hex : collector.removedCommits()) {
+            ObjectId id = ObjectId.parse(hex);
+            removed.add(id);
+            _commits.remove(id);
+            _short2Full.remove(prefix(id), id);
+        }
+        _msg2ID.values().removeIf(ids -> {
+            removed.forEach(ids::remove);
+            return ids.isEmpty();
+        });
+        System.out.println(collector.summary());
+    }
+
+    /** Verify every stored object and every reference between them, and
+     * print the problems found, the number of blobs still waiting for
+     * migrate-blobs, if any, and a summary. */
+    void fsck() {
+        IntegrityChecker checker = new IntegrityChecker(this);
+        checker.check();
+        for (String problem : checker.problems()) {
+            System.out.println(problem);
+        }
+        if (checker.unmigrated() > 0) {
+            System.out.printf("%d blobs are stored under old IDs; run "
+                    + "migrate-blobs.%n", checker.unmigrated());
+        }
+        System.out.println(checker.summary());
+    }
+
+    /** Merge the commit named by THEIRS into the one named by OURS, each
+     * a branch or a commit ID, in the object store alone, leaving the
+     * working directory, the stage and the branches as they are. Print
+     * the ID of the merge commit, or if there were conflicts, the ID of
+     * the merged tree and the paths in conflict. */
+    void mergeTree(String ours, String theirs) {
+        Commit cur = Utils.getCommit(commitNamed(ours));
+        Commit given = Utils.getCommit(commitNamed(theirs));
+        prefetch(cur, given);
+        MergeTree merge = new MergeTree(cur.commitID(), given.commitID());
+        String msg = "Merged " + theirs + " into " + ours + ".";
+        String result = merge.commit(msg);
+        if (result == null) {
+            System.out.println(merge.tree());
+            for (MergeTree.Conflict c : merge.conflicts()) {
+                System.out.println(c);
+            }
+            return;
+        }
+        if (!_commits.contains(ObjectId.parse(result))) {
+            record(result, msg);
+        }
+        System.out.println(result);
+    }
+
+    /** Print the paths whose files differ between the commits named by
+     * FROM and TO, each a branch or a commit ID, in order of path: A
+     * before those TO added, D before those it deleted and M before
+     * those it modified. If CONTENT, follow each by the unified diff of
+     * its two versions. The two trees are joined in one pass, reading
+     * only the subtrees that differ. */
+    void diff(String from, String to, boolean content) {
+        Commit a = Utils.getCommit(commitNamed(from));
+        Commit b = Utils.getCommit(commitNamed(to));
+        TreeMap<String, String[]> changes = Tree.diff(a.tree(), b.tree());
+        if (content) {
+            HashSet<String> needed = new HashSet<>();
+            for (String[] pair : changes.values()) {
+                needed.addAll(Arrays.asList(pair));
+            }
+            needed.remove(null);
+            Utils.prefetchBlobs(needed);
+        }
+        try {
+            for (Map.Entry<String, String[]> e : changes.entrySet()) {
+                String path = e.getKey();
+                String[] pair = e.getValue();
+                String kind = pair[0] == null ? "A"
+                    : pair[1] == null ? "D" : "M";
+                System.out.println(kind + " " + path);
+                if (content) {
+                    new UnifiedDiff(contentOf(pair[0]), contentOf(pair[1]))
+                        .writeTo(System.out,
+                                 pair[0] == null ? "/dev/null" : "a/" + path,
+                                 pair[1] == null ? "/dev/null" : "b/" + path);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        System.out.flush();
+    }
+
+    /** Return the content of the blob BLOBID, or null if it is null. */
+    private static byte[] contentOf(String blobID) {
+        return blobID == null ? null : Utils.getBlob(blobID).blobInByte();
+    }
+
+    /** Print each line of FILE in the head commit after the short ID of
+     * the commit that last changed it and its line number. The lines are
+     * followed back through the versions of FILE in its history index
+     * alone; merges are credited with the lines they brought in. */
+    void annotate(String file) {
+        Commit head = Utils.getCommit(curHeadCommit());
+        String blobID = head.blobOf(file);
+        if (blobID == null) {
+            System.out.println("File does not exist in that commit.");
+            System.exit(0);
+        }
+        byte[] content = Utils.getBlob(blobID).blobInByte();
+        if (ThreeWayMerge.isBinary(content)) {
+            System.out.println("Cannot annotate a binary file.");
+            System.exit(0);
+        }
+        String[] credit =
+            PathHistory.credit(file, blobID, content, head.commitID());
+        ArrayList<String> lines = ThreeWayMerge.lines(content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < credit.length; i += 1) {
+            String line = lines.get(i);
+            if (line.endsWith("\n")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            out.writeBytes((credit[i].substring(0, 7) + " " + (i + 1)
+                            + ") ").getBytes(StandardCharsets.UTF_8));
+            out.writeBytes(line.getBytes(StandardCharsets.ISO_8859_1));
+            out.write('\n');
+        }
+        System.out.write(out.toByteArray(), 0, out.size());
+        System.out.flush();
+    }
+
+    /** Apply the changes the commit with ID COMMITID made to its first
+     * parent to the head of the current branch, as a new commit with its
+     * message, merging them as merge would. The working directory is
+     * written once, when the new commit is made. */
+    void cherryPick(String commitID) {
+        Commit picked = Utils.getCommit(findFullID(commitID));
+        Commit head = Utils.getCommit(curHeadCommit());
+        prefetch(picked, head);
+        if (picked.parent1() != null) {
+            prefetch(Utils.getCommit(picked.parent1()));
+        }
+        ArrayList<MergeTree.Conflict> conflicts = new ArrayList<>();
+        String result = replay(picked, head.commitID(), conflicts);
+        if (result == null) {
+            System.out.println("No changes added to the commit.");
+            System.exit(0);
+        }
+        moveHead(result, conflicts);
+    }
+
+    /** Replay the commits of the current branch that GIVENBRANCH does not
+     * contain on top of the head of GIVENBRANCH, oldest first, following
+     * first parents. Each is replayed in the object store alone, as for
+     * cherryPick, and one that changes nothing there is dropped; the
+     * working directory is written once, at the end. */
+    void rebase(String givenBranch) {
+        String head = curHeadCommit();
+        String onto = branchHead(givenBranch);
+        String split = findSplitPoint(givenBranch);
+        if (split.equals(onto)) {
+            System.out.println("Given branch is an ancestor "
+                    + "of the current branch.");
+            return;
+        } else if (split.equals(head)) {
+            System.out.println("Current branch fast-forwarded.");
+            moveHead(onto, Collections.emptyList());
+            return;
+        }
+        IdSet contained = allAncestors(onto);
+        ArrayList<Commit> picks = new ArrayList<>();
+        String c = head;
+        while (c != null && !contained.contains(ObjectId.parse(c))) {
+            Commit picked = Utils.getCommit(c);
+            picks.add(picked);
+            c = picked.parent1();
+        }
+        Collections.reverse(picks);
+        ArrayList<Commit> read = new ArrayList<>(picks);
+        read.add(Utils.getCommit(onto));
+        if (picks.get(0).parent1() != null) {
+            read.add(Utils.getCommit(picks.get(0).parent1()));
+        }
+        prefetch(read.toArray(new Commit[0]));
+        ArrayList<MergeTree.Conflict> conflicts = new ArrayList<>();
+        String tip = onto;
+        for (Commit picked : picks) {
+            String next = replay(picked, tip, conflicts);
+            if (next != null) {
+                tip = next;
+            }
+        }
+        moveHead(tip, conflicts);
+    }
+
+    /** Return the ID of a new commit on the commit with ID ONTO making
+     * the changes PICKED made to its first parent, with PICKED's message,
+     * or null if they change nothing there. Conflicts are committed with
+     * their markers, as merge commits them, and added to CONFLICTS. */
+    private String replay(Commit picked, String onto,
+                          List<MergeTree.Conflict> conflicts) {
+        MergeTree merge =
+            new MergeTree(picked.parent1(), onto, picked.commitID());
+        if (merge.tree().equals(Utils.getCommit(onto).tree())) {
+            return null;
+        }
+        conflicts.addAll(merge.conflicts());
+        String time = Utils.formatt().format(new Date());
+        String msg = picked.message();
+        String result = new Commit(msg, onto, null, merge.tree(), time)
+            .commitID();
+        record(result, msg);
+        return result;
+    }
+
+    /** Make the commit with ID TARGET the head of the current branch,
+     * writing its files into the working directory, and report a
+     * conflict if CONFLICTS is not empty. */
+    private void moveHead(String target,
+                          Collection<MergeTree.Conflict> conflicts) {
+        switchTo(Utils.getCommit(target));
+        setBranchHead(_curBranch, target);
+        if (!conflicts.isEmpty()) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    /** Return the ID of the commit named by NAME, the name of a branch or
+     * a commit ID, which may be abbreviated. */
+    String commitNamed(String name) {
+        if (_branches.containsKey(name)) {
+            return branchHead(name);
+        }
+        return findFullID(name);
+    }
+
     /** Print out commit IDs with given message MSG. */
     void find(String msg) {
         if (!_msg2ID.containsKey(msg)) {
             System.out.println("Found no commit with that message.");
             System.exit(0);
         }
-        HashSet<String> allID = _msg2ID.get(msg);
-        for (String id : allID) {
+        for (ObjectId id : _msg2ID.get(msg)) {
             System.out.println(id);
         }
     }
@@ -649,25 +1393,36 @@ public class CommitTree implements Serializable {
             System.out.println("No commit with that id exists.");
             System.exit(0);
         }
-        if (shortID.length() == Utils.UID_LENGTH) {
-            if (!_commits.contains(shortID)) {
-                System.out.println("No commit with that id exists.");
-                System.exit(0);
+        ObjectId result;
+        try {
+            if (shortID.length() == Utils.idLength()) {
+                result = ObjectId.parse(shortID);
+                if (!_commits.contains(result)) {
+                    result = null;
+                }
+            } else {
+                result = _short2Full.get(
+                    Integer.parseInt(shortID.substring(0, 6), 16));
             }
-            return shortID;
+        } catch (IllegalArgumentException excp) {
+            result = null;
         }
-        String firstSix = shortID.substring(0, 6);
-        if (!_short2Full.containsKey(firstSix)) {
+        if (result == null) {
             System.out.println("No commit with that id exists.");
             System.exit(0);
         }
-        return _short2Full.get(firstSix);
+        return result.toString();
     }
 
     /** Serialize this Tree object. */
     void serializeTree() {
         File location = new File(Utils.repoLoc());
-        Utils.writeObject(location, this);
+        Trace.begin(Trace.Phase.SAVE);
+        try {
+            Utils.writeObject(location, this);
+        } finally {
+            Trace.end();
+        }
     }
 
 
@@ -677,7 +1432,7 @@ public class CommitTree implements Serializable {
     }
 
     /** Return all my commits. */
-    HashSet<String> allCommits() {
+    IdSet allCommits() {
         return _commits;
     }
 
@@ -687,10 +1442,10 @@ public class CommitTree implements Serializable {
     }
 
     /** Map names of branches to head commit ID of that Branch. */
-    private HashMap<String, String> _branches;
+    private HashMap<String, ObjectId> _branches;
 
     /** Map all commit message to commits' ID with that message. */
-    private HashMap<String, HashSet<String>> _msg2ID;
+    private HashMap<String, IdSet> _msg2ID;
 
     /** Names of the files scheduled addition. */
     private HashMap<String, String> _addedArea;
@@ -699,10 +1454,17 @@ public class CommitTree implements Serializable {
     private HashSet<String> _removeArea;
 
     /** All IDs. */
-    private HashSet<String> _commits;
+    private IdSet _commits;
+
+    /** Map from the first three bytes of a commit ID, the six hex digits
+     * it is abbreviated to at least, to the full ID. */
+    private HashMap<Integer, ObjectId> _short2Full;
 
-    /** Map from short shacode to full code. */
-    private HashMap<String, String> _short2Full;
+    /** Shift of the first eight bytes of an ID leaving its prefix. */
+    private static final int PREFIX_SHIFT = 40;
+
+    /** Format of the six hex digits of a prefix. */
+    private static final String PREFIX_FORMAT = "%06x";
 
     /** The name of branch that the commit head currently points to. */
     private String _curBranch;
@@ -721,7 +1483,19 @@ public class CommitTree implements Serializable {
 
     /** Return the ID of current commit. */
     String curHeadCommit() {
-        return _branches.get(_curBranch);
+        return branchHead(_curBranch);
+    }
+
+    /** Return the ID of the head commit of branch NAME, or null if there
+     * is no such branch. */
+    String branchHead(String name) {
+        ObjectId result = _branches.get(name);
+        return result == null ? null : result.toString();
+    }
+
+    /** Make the commit with ID COMMITID the head of branch NAME. */
+    void setBranchHead(String name, String commitID) {
+        _branches.put(name, ObjectId.parse(commitID));
     }
 
     /** Return true if no changes have been made in this stage. */
@@ -735,11 +1509,24 @@ public class CommitTree implements Serializable {
     }
 
     /** Return the Branch head mapping. */
-    HashMap<String, String> branches() {
+    HashMap<String, ObjectId> branches() {
         return _branches;
     }
 
+    /** Names of the remotes that promise the blobs a partial fetch
+     * left behind.
+     * @return my promisor remotes */
+    HashSet<String> promisors() {
+        if (_promisors == null) {
+            _promisors = new HashSet<>();
+        }
+        return _promisors;
+    }
+
     /** Set of all my remote repositories. */
     private HashMap<String, String> _remotes;
 
+    /** Names of remotes fetched from partially. */
+    private HashSet<String> _promisors;
+
 }
@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Deletes the stored objects of a repository that nothing refers to.
+ *  Marking starts from the heads of all branches, remote-tracking ones
+ *  included, and from the blobs on the stage, and follows parents, trees,
+ *  blobs and the chunks of chunked blobs. It proceeds a level at a time:
+ *  the commits or trees of a level are read in parallel, and the objects
+ *  they name that were not marked before make up the next level. Objects
+ *  are read straight from their files, bypassing the tree cache, which a
+ *  walk of every tree would only flush, and blobs left in a promisor
+ *  remote are not fetched.
+ *
+ *  Sweeping deletes every stored object that was not marked, unless it
+ *  was modified within the grace period. The grace period protects the
+ *  objects of a command running at the same time, which are written
+ *  before the repository object that refers to them.
+ *  @author Zixian Zang
+ */
+class GarbageCollector {
+
+    /** Grace period used unless another is asked for: two weeks, in
+     *  seconds. */
+    static final long DEFAULT_GRACE = 14 * 24 * 60 * 60;
+
+    /** A collector of the objects of REPO not modified within the last
+     *  GRACE seconds. A grace period reaching back before 1970 protects
+     *  every object. */
+    GarbageCollector(CommitTree repo, long grace) {
+        _repo = repo;
+        long now = System.currentTimeMillis();
+        _cutoff = now - Math.min(grace, now / 1000) * 1000;
+    }
+
+    /** Mark every object reachable from my repository. */
+    void mark() {
+        _blobs.addAll(_repo.addArea().values());
+        List<String> level = new ArrayList<>();
+        for (ObjectId head : _repo.branches().values()) {
+            if (_commits.add(head.toString())) {
+                level.add(head.toString());
+            }
+        }
+        while (!level.isEmpty()) {
+            level = level.parallelStream().flatMap(this::markCommit)
+                .collect(Collectors.toList());
+        }
+        level = new ArrayList<>(_treeRoots);
+        while (!level.isEmpty()) {
+            level = level.parallelStream().flatMap(this::markTree)
+                .collect(Collectors.toList());
+        }
+        String[] chunks = new File(Utils.chunkObjectDir()).list();
+        if (chunks != null && chunks.length > 0) {
+            _blobs.parallelStream().forEach(this::markChunks);
+        }
+    }
+
+    /** Mark the snapshot of the commit with ID ID, and return those of
+     *  its parents that were not marked before, marking them. The tree of
+     *  a commit written before trees were introduced is built in memory,
+     *  and kept if migrate-blobs or convert stored it. */
+    private Stream<String> markCommit(String id) {
+        File file = new File(Utils.commitObjectDir() + id);
+        if (!file.exists()) {
+            return Stream.empty();
+        }
+        Commit c = Utils.readObject(file, Commit.class);
+        if (!c.hasTree()) {
+            _blobs.addAll(c.filesInCommit().values());
+        }
+        if (_trees.add(c.tree())) {
+            _treeRoots.add(c.tree());
+        }
+        return c.parents().stream().filter(_commits::add);
+    }
+
+    /** Mark the blobs of the tree with ID ID, and return those of its
+     *  subtrees that were not marked before, marking them. */
+    private Stream<String> markTree(String id) {
+        File file = new File(Utils.treeObjectDir() + id);
+        if (!file.exists()) {
+            return Stream.empty();
+        }
+        Tree t = Utils.readObject(file, Tree.class);
+        _blobs.addAll(t.files().values());
+        return t.dirs().values().stream().filter(_trees::add);
+    }
+
+    /** Mark the chunks of the blob with ID ID, if it is stored here. */
+    private void markChunks(String id) {
+        File file = new File(Utils.blobObjectDir() + id);
+        if (file.exists()) {
+            _chunks.addAll(Utils.readObject(file, Blob.class).chunkIDs());
+        }
+    }
+
+    /** Delete the objects that mark did not mark and that are older than
+     *  the grace period, and the cached sketches of the blobs deleted. */
+    void sweep() {
+        sweep(Utils.commitObjectDir(), _commits, _removedCommits);
+        _removed[COMMITS] = _removedCommits.size();
+        _removed[TREES] = sweep(Utils.treeObjectDir(), _trees, null);
+        _removed[BLOBS] = sweep(Utils.blobObjectDir(), _blobs, null);
+        _removed[CHUNKS] = sweep(Utils.chunkObjectDir(), _chunks, null);
+        sweep(Utils.sketchDir(), _blobs, null);
+    }
+
+    /** Delete the files of directory DIR whose names are not in MARKED
+     *  and that are older than the grace period, adding their names to
+     *  REMOVED unless it is null, and return how many were deleted. */
+    private int sweep(String dir, Set<String> marked,
+                      Collection<String> removed) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        if (names == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String name : names) {
+            File file = new File(dir, name);
+            if (marked.contains(name) || file.lastModified() >= _cutoff) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                _reclaimed += length;
+                count += 1;
+                if (removed != null) {
+                    removed.add(name);
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Return the IDs of the commits deleted by sweep. */
+    List<String> removedCommits() {
+        return _removedCommits;
+    }
+
+    /** Return a summary of what sweep deleted. */
+    String summary() {
+        return String.format("Removed %d commits, %d trees, %d blobs and %d "
+                             + "chunks, reclaiming %d bytes.",
+                             _removed[COMMITS], _removed[TREES],
+                             _removed[BLOBS], _removed[CHUNKS], _reclaimed);
+    }
+
+    /** Indices of the kinds of objects in _removed. */
+    private static final int COMMITS = 0, TREES = 1, BLOBS = 2, CHUNKS = 3;
+
+    /** The repository collected. */
+    private final CommitTree _repo;
+
+    /** Objects modified at or after this time, in milliseconds, are
+     *  kept. */
+    private final long _cutoff;
+
+    /** Marked objects of each kind, by ID. */
+    private final Set<String> _commits = ConcurrentHashMap.newKeySet(),
+        _trees = ConcurrentHashMap.newKeySet(),
+        _blobs = ConcurrentHashMap.newKeySet(),
+        _chunks = ConcurrentHashMap.newKeySet();
+
+    /** Top trees of the marked commits, where the marking of trees
+     *  starts. */
+    private final Queue<String> _treeRoots = new ConcurrentLinkedQueue<>();
+
+    /** IDs of the commits deleted. */
+    private final List<String> _removedCommits = new ArrayList<>();
+
+    /** Number of objects of each kind deleted. */
+    private final int[] _removed = new int[4];
+
+    /** Bytes deleted. */
+    private long _reclaimed;
+}
@@ -0,0 +1,235 @@
+package gitlet;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JDK Flight Recorder events of Gitlet, so that recordings show which
+ *  objects a command reads, writes and copies, and how long its graph
+ *  walks and merges take. Each event is timed from begin to finish;
+ *  its fields are only filled in, and file sizes only asked for, when
+ *  the event is enabled and will be recorded. When no recording is
+ *  running, an event costs little more than its allocation.
+ *  @author Zixian Zang
+ */
+class GitletEvents {
+
+    /** Category of all Gitlet events. */
+    static final String CATEGORY = "Gitlet";
+
+    /** Reading of a stored commit, blob or tree. */
+    @Name("gitlet.ObjectRead")
+    @Label("Object Read")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class ObjectRead extends Event {
+        /** Kind of object. */
+        @Label("Kind")
+        String kind;
+
+        /** ID of the object. */
+        @Label("Object ID")
+        String id;
+
+        /** Stored size of the object. */
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        /** End me as the reading of the object of kind OBJKIND and ID
+         *  OBJID from FILE. */
+        void finish(String objKind, String objID, File file) {
+            end();
+            if (shouldCommit()) {
+                kind = objKind;
+                id = objID;
+                size = file.length();
+                commit();
+            }
+        }
+    }
+
+    /** Writing of a stored object. */
+    @Name("gitlet.ObjectWrite")
+    @Label("Object Write")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class ObjectWrite extends Event {
+        /** Class of the object. */
+        @Label("Kind")
+        String kind;
+
+        /** Path of the file written. */
+        @Label("Path")
+        String path;
+
+        /** Bytes written. */
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        /** End me as the writing of OBJ, BYTES bytes long, to FILE. */
+        void finish(Object obj, File file, long bytes) {
+            end();
+            if (shouldCommit()) {
+                kind = obj.getClass().getSimpleName();
+                path = file.getPath();
+                size = bytes;
+                commit();
+            }
+        }
+    }
+
+    /** Copying of a stored object between repositories. */
+    @Name("gitlet.ObjectCopy")
+    @Label("Object Copy")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class ObjectCopy extends Event {
+        /** Kind of object. */
+        @Label("Kind")
+        String kind;
+
+        /** ID of the object. */
+        @Label("Object ID")
+        String id;
+
+        /** Repository copied from. */
+        @Label("From")
+        String from;
+
+        /** Repository copied to. */
+        @Label("To")
+        String to;
+
+        /** Bytes copied, counting the chunks of a chunked blob; 0 if the
+         *  target already had the object. */
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        /** End me as the copy of the object of kind OBJKIND and ID OBJID
+         *  from SOURCE to TARGET, having moved BYTES bytes. */
+        void finish(String objKind, String objID, String source,
+                    String target, long bytes) {
+            end();
+            if (shouldCommit()) {
+                kind = objKind;
+                id = objID;
+                from = source;
+                to = target;
+                size = bytes;
+                commit();
+            }
+        }
+    }
+
+    /** A push or fetch of a branch. */
+    @Name("gitlet.RemoteTransfer")
+    @Label("Remote Transfer")
+    @Category(CATEGORY)
+    static class RemoteTransfer extends Event {
+        /** "push" or "fetch". */
+        @Label("Direction")
+        String direction;
+
+        /** Name of the remote. */
+        @Label("Remote")
+        String remote;
+
+        /** Name of the remote branch. */
+        @Label("Branch")
+        String branch;
+
+        /** Number of commits copied. */
+        @Label("Commits")
+        int commits;
+
+        /** True for a fetch of commits only. */
+        @Label("Partial")
+        boolean partial;
+
+        /** End me as a transfer in direction WAY with remote REMOTENAME of
+         *  its branch REMOTEBRANCH that copied COPIED commits, of commits
+         *  only if COMMITSONLY. */
+        void finish(String way, String remoteName, String remoteBranch,
+                    int copied, boolean commitsOnly) {
+            end();
+            if (shouldCommit()) {
+                direction = way;
+                remote = remoteName;
+                branch = remoteBranch;
+                commits = copied;
+                partial = commitsOnly;
+                commit();
+            }
+        }
+    }
+
+    /** A search for the split point of two branches. */
+    @Name("gitlet.SplitPoint")
+    @Label("Split Point")
+    @Category(CATEGORY)
+    static class SplitPoint extends Event {
+        /** Branch whose head is compared with the current one. */
+        @Label("Given Branch")
+        String branch;
+
+        /** The split point found. */
+        @Label("Split Point")
+        String splitPoint;
+
+        /** Commits read on the way. */
+        @Label("Commits Visited")
+        int visited;
+
+        /** End me as the search with branch GIVEN that found FOUND after
+         *  visiting SEEN commits. */
+        void finish(String given, String found, int seen) {
+            end();
+            if (shouldCommit()) {
+                branch = given;
+                splitPoint = found;
+                visited = seen;
+                commit();
+            }
+        }
+    }
+
+    /** A merge of a branch into the current one. */
+    @Name("gitlet.Merge")
+    @Label("Merge")
+    @Category(CATEGORY)
+    @Description("Three-way merge of the files of two branch heads")
+    static class Merge extends Event {
+        /** Branch merged in. */
+        @Label("Given Branch")
+        String branch;
+
+        /** Files examined. */
+        @Label("Files")
+        int files;
+
+        /** True if some file was in conflict. */
+        @Label("Conflict")
+        boolean conflict;
+
+        /** End me as the merge of branch GIVEN over EXAMINED files, with
+         *  a conflict if CONFLICTED. */
+        void finish(String given, int examined, boolean conflicted) {
+            end();
+            if (shouldCommit()) {
+                branch = given;
+                files = examined;
+                conflict = conflicted;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/** A map from object IDs to values of type V, kept in an open-addressing
+ *  table of primitive arrays. Each entry costs two longs, an int and a
+ *  reference, with no per-entry objects; lookups probe linearly from a
+ *  slot taken from the bits of the ID itself. The keys are all SHA-1 or
+ *  all SHA-256 IDs, as the first one put; the extra bytes of SHA-256 IDs
+ *  are kept in arrays that only a map of them has. Null keys and null
+ *  values are not allowed. Removing an entry moves back the entries
+ *  probed past it, so that no deleted slots are left behind.
+ *  @author Zixian Zang
+ */
+class IdMap<V> {
+
+    /** Slots of a new table; a power of two. */
+    private static final int INITIAL_SLOTS = 16;
+
+    /** An empty map. */
+    IdMap() {
+        this(0);
+    }
+
+    /** An empty map with room for EXPECTED entries before it grows. */
+    IdMap(int expected) {
+        int slots = INITIAL_SLOTS;
+        while (slots < 2 * expected) {
+            slots *= 2;
+        }
+        allocate(slots);
+    }
+
+    /** Return the number of entries. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true if I have no entries. */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Return the value of ID, or null if it has none. */
+    V get(ObjectId id) {
+        if (id.wide() != _wide) {
+            return null;
+        }
+        int slot = find(id);
+        return _values[slot] == null ? null : value(slot);
+    }
+
+    /** Return true if ID has a value. */
+    boolean containsKey(ObjectId id) {
+        return id.wide() == _wide && _values[find(id)] != null;
+    }
+
+    /** Map ID to VALUE, and return its previous value or null. */
+    V put(ObjectId id, V value) {
+        if (value == null) {
+            throw new NullPointerException("null value");
+        }
+        if (id.wide() != _wide) {
+            if (_size > 0) {
+                throw new IllegalArgumentException("SHA-1 and SHA-256 IDs "
+                                                   + "in one map");
+            }
+            _wide = id.wide();
+            allocate(_values.length);
+        }
+        int slot = find(id);
+        V old = value(slot);
+        if (old == null) {
+            if (2 * (_size + 1) > _values.length) {
+                grow();
+                slot = find(id);
+            }
+            setKey(slot, id);
+            _size += 1;
+        }
+        _values[slot] = value;
+        return old;
+    }
+
+    /** Remove the entry of ID, and return its value or null. */
+    V remove(ObjectId id) {
+        if (id.wide() != _wide) {
+            return null;
+        }
+        int hole = find(id);
+        V old = value(hole);
+        if (old == null) {
+            return null;
+        }
+        int mask = _values.length - 1;
+        for (int slot = (hole + 1) & mask; _values[slot] != null;
+             slot = (slot + 1) & mask) {
+            int home = home(_hi[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                _hi[hole] = _hi[slot];
+                _mid[hole] = _mid[slot];
+                _lo[hole] = _lo[slot];
+                if (_wide) {
+                    _tail[hole] = _tail[slot];
+                    _end[hole] = _end[slot];
+                }
+                _values[hole] = _values[slot];
+                hole = slot;
+            }
+        }
+        _values[hole] = null;
+        _size -= 1;
+        return old;
+    }
+
+    /** Call ACTION on every entry, in no particular order. */
+    void forEach(BiConsumer<ObjectId, V> action) {
+        for (int i = 0; i < _values.length; i += 1) {
+            if (_values[i] != null) {
+                action.accept(key(i), value(i));
+            }
+        }
+    }
+
+    /** Return an iterator over my keys, in no particular order, which
+     *  must not be used once I am changed. */
+    Iterator<ObjectId> keys() {
+        return new Iterator<ObjectId>() {
+            @Override
+            public boolean hasNext() {
+                while (_next < _values.length && _values[_next] == null) {
+                    _next += 1;
+                }
+                return _next < _values.length;
+            }
+
+            @Override
+            public ObjectId next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _next += 1;
+                return key(_next - 1);
+            }
+
+            /** Slot to look at next. */
+            private int _next;
+        };
+    }
+
+    /** Return the value in SLOT. */
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) _values[slot];
+    }
+
+    /** Return the key in SLOT. */
+    private ObjectId key(int slot) {
+        if (_wide) {
+            return new ObjectId(_hi[slot], _mid[slot], _lo[slot],
+                                _tail[slot], _end[slot], true);
+        }
+        return new ObjectId(_hi[slot], _mid[slot], _lo[slot]);
+    }
+
+    /** Make ID the key in SLOT. */
+    private void setKey(int slot, ObjectId id) {
+        _hi[slot] = id.hi();
+        _mid[slot] = id.mid();
+        _lo[slot] = id.lo();
+        if (_wide) {
+            _tail[slot] = id.tail();
+            _end[slot] = id.end();
+        }
+    }
+
+    /** Return the slot holding ID, of my width, or the empty slot where
+     *  it would go. */
+    private int find(ObjectId id) {
+        long hi = id.hi(), mid = id.mid();
+        int lo = id.lo();
+        int mask = _values.length - 1;
+        int slot = home(hi);
+        while (_values[slot] != null
+               && (_hi[slot] != hi || _mid[slot] != mid || _lo[slot] != lo
+                   || _wide && (_tail[slot] != id.tail()
+                                || _end[slot] != id.end()))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Return the slot where probing for an ID whose first eight bytes
+     *  are HI starts. */
+    private int home(long hi) {
+        return (int) (hi ^ (hi >>> 32)) & (_values.length - 1);
+    }
+
+    /** Make my table twice as large, moving all entries. */
+    private void grow() {
+        long[] hi = _hi, mid = _mid, tail = _tail;
+        int[] lo = _lo, end = _end;
+        Object[] values = _values;
+        allocate(2 * values.length);
+        for (int i = 0; i < values.length; i += 1) {
+            if (values[i] != null) {
+                ObjectId id = new ObjectId(hi[i], mid[i], lo[i],
+                                           _wide ? tail[i] : 0,
+                                           _wide ? end[i] : 0, _wide);
+                int slot = find(id);
+                setKey(slot, id);
+                _values[slot] = values[i];
+            }
+        }
+    }
+
+    /** Replace my table by an empty one of SLOTS slots. */
+    private void allocate(int slots) {
+        _hi = new long[slots];
+        _mid = new long[slots];
+        _lo = new int[slots];
+        _tail = _wide ? new long[slots] : null;
+        _end = _wide ? new int[slots] : null;
+        _values = new Object[slots];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        forEach((id, v) -> {
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+            result.append(id).append('=').append(v);
+        });
+        return result.append('}').toString();
+    }
+
+    /** Bytes of the IDs in each slot. */
+    private long[] _hi, _mid;
+
+    /** Bytes 16 to 19 of the IDs in each slot. */
+    private int[] _lo;
+
+    /** Bytes 20 to 27 of the IDs in each slot if I hold SHA-256 IDs,
+     *  else null. */
+    private long[] _tail;
+
+    /** Bytes 28 to 31 of the IDs in each slot if I hold SHA-256 IDs,
+     *  else null. */
+    private int[] _end;
+
+    /** True if I hold SHA-256 IDs. */
+    private boolean _wide;
+
+    /** Value in each slot; null for an empty slot. */
+    private Object[] _values;
+
+    /** Number of entries. */
+    private int _size;
+}
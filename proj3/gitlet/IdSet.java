@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/** A set of object IDs, kept in an IdMap.
+ *  @author Zixian Zang
+ */
+class IdSet implements Iterable<ObjectId> {
+
+    /** An empty set. */
+    IdSet() {
+        _map = new IdMap<>();
+    }
+
+    /** An empty set with room for EXPECTED IDs before it grows. */
+    IdSet(int expected) {
+        _map = new IdMap<>(expected);
+    }
+
+    /** Add ID, and return true if it was not already present. */
+    boolean add(ObjectId id) {
+        return _map.put(id, Boolean.TRUE) == null;
+    }
+
+    /** Remove ID, and return true if it was present. */
+    boolean remove(ObjectId id) {
+        return _map.remove(id) != null;
+    }
+
+    /** Return true if I contain ID. */
+    boolean contains(ObjectId id) {
+        return _map.containsKey(id);
+    }
+
+    /** Return the number of IDs in me. */
+    int size() {
+        return _map.size();
+    }
+
+    /** Return true if I am empty. */
+    boolean isEmpty() {
+        return _map.isEmpty();
+    }
+
+    /** Return an iterator over my IDs, in no particular order, which
+     *  must not be used once I am changed. */
+    @Override
+    public Iterator<ObjectId> iterator() {
+        return _map.keys();
+    }
+
+    /** Call ACTION on each of my IDs, in no particular order. */
+    @Override
+    public void forEach(Consumer<? super ObjectId> action) {
+        _map.forEach((id, v) -> action.accept(id));
+    }
+
+    /** Holds my IDs as its keys. */
+    private final IdMap<Boolean> _map;
+}
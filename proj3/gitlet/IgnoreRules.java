@@ -0,0 +1,217 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+/** The glob patterns of a .gitletignore file, compiled once into a
+ *  matcher that decides from a path alone whether a working-directory
+ *  scan should skip it, so that ignored paths are never stat'ed or read.
+ *
+ *  Each non-blank line not starting with # is a pattern. A pattern
+ *  ending in / only matches directories. A pattern containing any other
+ *  / is matched against the whole path from the top of the working
+ *  directory; any other pattern is matched against the last component
+ *  of a path at any depth. In a pattern, * matches any run of characters
+ *  other than /, ** matches any run of characters, and ? matches one
+ *  character other than /.
+ *  @author Zixian Zang
+ */
+class IgnoreRules {
+
+    /** Name of the file holding the patterns. */
+    static final String FILENAME = ".gitletignore";
+
+    /** Patterns that always apply. */
+    private static final String[] DEFAULTS = { ".gitlet/", ".DS_Store",
+                                               FILENAME };
+
+    /** Patterns matching files and directories alike. */
+    private final Group _any = new Group();
+
+    /** Patterns matching directories only. */
+    private final Group _dirs = new Group();
+
+    /** Rules made of the default patterns and the patterns in LINES. */
+    IgnoreRules(Iterable<String> lines) {
+        for (String line : DEFAULTS) {
+            addPattern(line);
+        }
+        for (String line : lines) {
+            addPattern(line.trim());
+        }
+        _any.compile();
+        _dirs.compile();
+    }
+
+    /** Return the rules of the .gitletignore file in directory DIR, or
+     *  the default rules if it has none. */
+    static IgnoreRules load(File dir) {
+        File file = new File(dir, FILENAME);
+        ArrayList<String> lines = new ArrayList<>();
+        if (file.isFile()) {
+            for (String line : Utils.readContentsAsString(file).split("\n")) {
+                lines.add(line);
+            }
+        }
+        return new IgnoreRules(lines);
+    }
+
+    /** Add the pattern on LINE, unless it is blank or a comment. */
+    private void addPattern(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        Group group = _any;
+        if (line.endsWith("/")) {
+            group = _dirs;
+            line = line.substring(0, line.length() - 1);
+        }
+        if (line.startsWith("/")) {
+            line = line.substring(1);
+        }
+        if (!line.isEmpty()) {
+            group.add(line);
+        }
+    }
+
+    /** Return true if a file or directory at PATH, whose last component
+     *  is NAME, is ignored whatever its kind. */
+    boolean ignored(String path, String name) {
+        return _any.matches(path, name);
+    }
+
+    /** Return true if the directory at PATH, whose last component is
+     *  NAME, is ignored. */
+    boolean ignoredDirectory(String path, String name) {
+        return _any.matches(path, name) || _dirs.matches(path, name);
+    }
+
+    /** Return true if the file at PATH, or any directory on the way to
+     *  it, is ignored. */
+    boolean ignoredPath(String path) {
+        String[] parts = path.split(Tree.SEP);
+        String prefix = "";
+        for (int i = 0; i < parts.length - 1; i += 1) {
+            prefix += parts[i];
+            if (ignoredDirectory(prefix, parts[i])) {
+                return true;
+            }
+            prefix += Tree.SEP;
+        }
+        return ignored(path, parts[parts.length - 1]);
+    }
+
+    /** A compiled set of patterns. Literal names, *.suffix patterns and
+     *  name* patterns are checked with hashing and string comparisons;
+     *  all others are joined into one regular expression for names and
+     *  one for whole paths. */
+    private static class Group {
+
+        /** Add PATTERN to this group. */
+        void add(String pattern) {
+            String head = pattern.substring(0, pattern.length() - 1);
+            String tail = pattern.substring(1);
+            if (pattern.contains("/")) {
+                _pathGlobs.add(toRegex(pattern));
+            } else if (!hasWildcard(pattern)) {
+                _names.add(pattern);
+            } else if (pattern.startsWith("*") && !hasWildcard(tail)) {
+                _suffixes.add(tail);
+            } else if (pattern.endsWith("*") && !hasWildcard(head)) {
+                _prefixes.add(head);
+            } else {
+                _nameGlobs.add(toRegex(pattern));
+            }
+        }
+
+        /** Join the added globs into their regular expressions. */
+        void compile() {
+            _nameRegex = join(_nameGlobs);
+            _pathRegex = join(_pathGlobs);
+        }
+
+        /** Return true if PATH, whose last component is NAME, matches
+         *  some pattern of this group. */
+        boolean matches(String path, String name) {
+            if (_names.contains(name)) {
+                return true;
+            }
+            for (String suffix : _suffixes) {
+                if (name.endsWith(suffix)) {
+                    return true;
+                }
+            }
+            for (String prefix : _prefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return (_nameRegex != null && _nameRegex.matcher(name).matches())
+                || (_pathRegex != null && _pathRegex.matcher(path).matches());
+        }
+
+        /** Return one pattern matching any of REGEXES, or null if there
+         *  are none. */
+        private static Pattern join(ArrayList<String> regexes) {
+            if (regexes.isEmpty()) {
+                return null;
+            }
+            String alternatives = String.join(")|(?:", regexes);
+            return Pattern.compile("(?:" + alternatives + ")");
+        }
+
+        /** Return true if GLOB holds a wildcard. */
+        private static boolean hasWildcard(String glob) {
+            return glob.indexOf('*') >= 0 || glob.indexOf('?') >= 0;
+        }
+
+        /** Return the regular expression equivalent to GLOB. */
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < glob.length(); i += 1) {
+                char c = glob.charAt(i);
+                if (c == '*' && i + 1 < glob.length()
+                    && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i += 1;
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else {
+                    if (REGEX_SPECIALS.indexOf(c) >= 0) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+                }
+            }
+            return regex.toString();
+        }
+
+        /** Characters that must be escaped in a regular expression. */
+        private static final String REGEX_SPECIALS = "\\.[]{}()+-^$|";
+
+        /** Names matched literally. */
+        private final HashSet<String> _names = new HashSet<>();
+
+        /** Suffixes of *.suffix patterns. */
+        private final ArrayList<String> _suffixes = new ArrayList<>();
+
+        /** Prefixes of name* patterns. */
+        private final ArrayList<String> _prefixes = new ArrayList<>();
+
+        /** Regular expressions of the other name patterns. */
+        private final ArrayList<String> _nameGlobs = new ArrayList<>();
+
+        /** Regular expressions of the whole-path patterns. */
+        private final ArrayList<String> _pathGlobs = new ArrayList<>();
+
+        /** Compiled name expression, or null. */
+        private Pattern _nameRegex;
+
+        /** Compiled path expression, or null. */
+        private Pattern _pathRegex;
+    }
+}
@@ -0,0 +1,257 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Verifies the stored objects of a repository. Every commit, tree, blob
+ *  and chunk is read and hashed again, and must hash to the ID it is
+ *  stored under; an object that cannot even be decoded, such as one cut
+ *  short by an interrupted write, is corrupt as well. Every ID referred
+ *  to by a branch, the commit index, the stage, a commit, a tree or a
+ *  chunked blob must name a stored object, except that blobs may be
+ *  missing from a repository with promisor remotes, which fetches them
+ *  when they are needed.
+ *
+ *  The objects of each kind are verified in a parallel stream; what they
+ *  refer to is collected in concurrent sets and looked up afterwards.
+ *  Commits stored before trees were introduced were hashed differently,
+ *  so only their references are checked. Blobs stored before they were
+ *  addressed by content alone are hashed with one of the names they are
+ *  stored under, and are counted as waiting for migrate-blobs rather
+ *  than as corrupt.
+ *  @author Zixian Zang
+ */
+class IntegrityChecker {
+
+    /** A checker of REPO. */
+    IntegrityChecker(CommitTree repo) {
+        _repo = repo;
+    }
+
+    /** Verify every object and reference of my repository. */
+    void check() {
+        long start = System.nanoTime();
+        Set<String> commits = stored(Utils.commitObjectDir());
+        Set<String> trees = stored(Utils.treeObjectDir());
+        Set<String> blobs = stored(Utils.blobObjectDir());
+        Set<String> chunks = stored(Utils.chunkObjectDir());
+        commits.parallelStream().forEach(this::checkCommit);
+        trees.parallelStream().forEach(this::checkTree);
+        blobs.parallelStream().forEach(id -> checkBlob(id, chunks));
+        chunks.parallelStream().filter(id -> !_verifiedChunks.contains(id))
+            .forEach(this::readChunk);
+        _repo.branches().values()
+            .forEach(id -> _commitRefs.add(id.toString()));
+        _repo.allCommits().forEach(id -> _commitRefs.add(id.toString()));
+        _blobRefs.addAll(_repo.addArea().values());
+        missing("commit", _commitRefs, commits);
+        missing("tree", _treeRefs, trees);
+        missing("chunk", _chunkRefs, chunks);
+        if (_repo.promisors().isEmpty()) {
+            missing("blob", _blobRefs, blobs);
+        }
+        _objects = commits.size() + trees.size() + blobs.size()
+            + chunks.size();
+        _nanos = System.nanoTime() - start;
+    }
+
+    /** Return the names of the objects stored in directory DIR, as a
+     *  new set. */
+    private static Set<String> stored(String dir) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        return names == null ? new HashSet<>() : new HashSet<>(names);
+    }
+
+    /** Verify the commit stored under ID and note what it refers to. */
+    private void checkCommit(String id) {
+        Commit c = read(Utils.commitObjectDir(), id, "commit", Commit.class);
+        if (c == null) {
+            return;
+        }
+        if (c.hasTree()) {
+            if (!id.equals(c.commitID()) || !id.equals(c.computeID())) {
+                corrupt("commit", id);
+            }
+            _treeRefs.add(c.tree());
+        } else {
+            _blobRefs.addAll(c.filesInCommit().values());
+            addNames(c.filesInCommit());
+        }
+        _commitRefs.addAll(c.parents());
+    }
+
+    /** Verify the tree stored under ID and note what it refers to. */
+    private void checkTree(String id) {
+        Tree t = read(Utils.treeObjectDir(), id, "tree", Tree.class);
+        if (t == null) {
+            return;
+        }
+        if (!id.equals(t.treeID()) || !id.equals(t.contentID())) {
+            corrupt("tree", id);
+        }
+        _treeRefs.addAll(t.dirs().values());
+        _blobRefs.addAll(t.files().values());
+        addNames(t.files());
+    }
+
+    /** Note the names under which FILES, a map from names to blob IDs,
+     *  stores each blob. */
+    private void addNames(Map<String, String> files) {
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            _names.computeIfAbsent(e.getValue(),
+                                   k -> ConcurrentHashMap.newKeySet())
+                .add(e.getKey());
+        }
+    }
+
+    /** Return true if ID is the ID, from before blobs were addressed by
+     *  content alone, of CONTENT under one of the names it is stored
+     *  under. */
+    private boolean isUnmigrated(String id, byte[] content) {
+        for (String name : _names.getOrDefault(id, Collections.emptySet())) {
+            if (id.equals(Utils.sha1(name, "BLOB", content))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Verify the blob stored under ID and its chunks, unless some of
+     *  them are not among CHUNKS, the IDs of the stored chunks. */
+    private void checkBlob(String id, Set<String> chunks) {
+        Blob b = read(Utils.blobObjectDir(), id, "blob", Blob.class);
+        if (b == null) {
+            return;
+        }
+        String content;
+        if (b.chunkIDs().isEmpty()) {
+            content = Blob.contentID(b.blobInByte());
+            if (!id.equals(content) && id.equals(b.blobShaID())
+                && isUnmigrated(id, b.blobInByte())) {
+                _unmigrated.incrementAndGet();
+                return;
+            }
+        } else {
+            _chunkRefs.addAll(b.chunkIDs());
+            if (!chunks.containsAll(b.chunkIDs())) {
+                return;
+            }
+            MessageDigest md = Utils.blobDigest();
+            for (String chunk : b.chunkIDs()) {
+                md.update(readChunk(chunk));
+            }
+            content = Utils.toHex(md.digest());
+        }
+        if (!id.equals(b.blobShaID()) || !id.equals(content)) {
+            corrupt("blob", id);
+        }
+    }
+
+    /** Return the bytes of the chunk stored under ID, noting it as
+     *  verified and as corrupt if they do not hash to ID. */
+    private byte[] readChunk(String id) {
+        byte[] bytes =
+            Utils.readContents(new File(Utils.chunkObjectDir() + id));
+        _bytes.add(bytes.length);
+        if (_verifiedChunks.add(id)
+            && !id.equals(Utils.hash("CHUNK", bytes))) {
+            corrupt("chunk", id);
+        }
+        return bytes;
+    }
+
+    /** Return the object of class TYPE stored under ID in directory DIR,
+     *  or null, noting it as a corrupt KIND, if it cannot be decoded. */
+    private <T extends Serializable> T read(String dir, String id,
+                                            String kind, Class<T> type) {
+        File file = new File(dir + id);
+        _bytes.add(file.length());
+        try {
+            return Utils.readObject(file, type);
+        } catch (RuntimeException excp) {
+            corrupt(kind, id);
+            return null;
+        }
+    }
+
+    /** Note that the KIND stored under ID is corrupt. */
+    private void corrupt(String kind, String id) {
+        _problems.add("corrupt " + kind + " " + id);
+    }
+
+    /** Note every ID in REFS that is not in STORED as a missing KIND. */
+    private void missing(String kind, Collection<String> refs,
+                         Set<String> stored) {
+        for (String id : refs) {
+            if (!stored.contains(id)) {
+                _problems.add("missing " + kind + " " + id);
+            }
+        }
+    }
+
+    /** Return the problems found, sorted. */
+    List<String> problems() {
+        ArrayList<String> result = new ArrayList<>(_problems);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the number of blobs stored under IDs from before blobs were
+     *  addressed by content alone. */
+    int unmigrated() {
+        return _unmigrated.get();
+    }
+
+    /** Return a summary of what was checked and how fast. */
+    String summary() {
+        long bytes = _bytes.sum();
+        double seconds = Math.max(_nanos, 1) / 1e9;
+        return String.format("Checked %d objects, %d bytes, in %d ms "
+                             + "(%.1f MB/s): %d problems.", _objects, bytes,
+                             _nanos / 1000000, bytes / 1e6 / seconds,
+                             _problems.size());
+    }
+
+    /** The repository checked. */
+    private final CommitTree _repo;
+
+    /** IDs referred to, by kind of object. */
+    private final Set<String> _commitRefs = ConcurrentHashMap.newKeySet(),
+        _treeRefs = ConcurrentHashMap.newKeySet(),
+        _blobRefs = ConcurrentHashMap.newKeySet(),
+        _chunkRefs = ConcurrentHashMap.newKeySet();
+
+    /** Names under which each blob is stored, by blob ID. */
+    private final Map<String, Set<String>> _names = new ConcurrentHashMap<>();
+
+    /** Number of blobs waiting for migrate-blobs. */
+    private final AtomicInteger _unmigrated = new AtomicInteger();
+
+    /** IDs of the chunks already hashed. */
+    private final Set<String> _verifiedChunks = ConcurrentHashMap.newKeySet();
+
+    /** Problems found. */
+    private final Queue<String> _problems = new ConcurrentLinkedQueue<>();
+
+    /** Bytes read. */
+    private final LongAdder _bytes = new LongAdder();
+
+    /** Number of objects stored. */
+    private int _objects;
+
+    /** Time the check took. */
+    private long _nanos;
+}
@@ -0,0 +1,155 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** A longest common subsequence of two sequences of lines, each line
+ *  given as a number that is equal for equal lines. It is found by the
+ *  linear-space variant of Myers' O(ND) algorithm: the middle snake of
+ *  the shortest edit script is found by searching forwards from the
+ *  start and backwards from the end at once, and the two halves around
+ *  it are solved in turn. Common prefixes and suffixes are matched first.
+ *  Memory is linear in the length of the sequences.
+ *
+ *  Time is bounded as well: when a single search would take more than
+ *  WORK_LIMIT steps, the lines it covers are left unmatched. The result
+ *  is then a longer edit script than the shortest, but still a correct
+ *  one, and a merge built on it only finds more conflicts.
+ *  @author Zixian Zang
+ */
+class LineDiff {
+
+    /** Most steps taken by one search for a middle snake. */
+    static final long WORK_LIMIT = 1L << 27;
+
+    /** Return, for each line of A, the index of the line of B that it is
+     *  matched with, or -1 if it is not matched. Matched lines are equal,
+     *  and appear in the same order in A and B. */
+    static int[] match(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        Arrays.fill(result, -1);
+        new LineDiff(a, b, result).diff(0, a.length, 0, b.length);
+        return result;
+    }
+
+    /** A diff of A and B that records its matches in MATCH. */
+    private LineDiff(int[] a, int[] b, int[] match) {
+        _a = a;
+        _b = b;
+        _match = match;
+    }
+
+    /** Match the lines of A[ALO .. AHI) with those of B[BLO .. BHI). */
+    private void diff(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            _match[aLo] = bLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+            _match[aHi] = bHi;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        int[] split = bisect(aLo, aHi, bLo, bHi);
+        if (split == null || split[0] == aLo && split[1] == bLo
+            || split[0] == aHi && split[1] == bHi) {
+            return;
+        }
+        diff(aLo, split[0], bLo, split[1]);
+        diff(split[0], aHi, split[1], bHi);
+    }
+
+    /** Return the point {X, Y} where the forward and backward searches
+     *  over A[ALO .. AHI) and B[BLO .. BHI) meet, or null if they do not
+     *  meet within the work limit or the lines have nothing in common. */
+    private int[] bisect(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        int[] forward = new int[length], backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            if ((long) d * (n + m) > WORK_LIMIT) {
+                return null;
+            }
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1off = offset + k1;
+                int x1;
+                if (k1 == -d
+                    || k1 != d && forward[k1off - 1] < forward[k1off + 1]) {
+                    x1 = forward[k1off + 1];
+                } else {
+                    x1 = forward[k1off - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m
+                       && _a[aLo + x1] == _b[bLo + y1]) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                forward[k1off] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2off = offset + delta - k1;
+                    if (k2off >= 0 && k2off < length
+                        && backward[k2off] != -1
+                        && x1 >= n - backward[k2off]) {
+                        return new int[] { aLo + x1, bLo + y1 };
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2off = offset + k2;
+                int x2;
+                if (k2 == -d
+                    || k2 != d && backward[k2off - 1] < backward[k2off + 1]) {
+                    x2 = backward[k2off + 1];
+                } else {
+                    x2 = backward[k2off - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m
+                       && _a[aHi - x2 - 1] == _b[bHi - y2 - 1]) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                backward[k2off] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1off = offset + delta - k2;
+                    if (k1off >= 0 && k1off < length
+                        && forward[k1off] != -1) {
+                        int x1 = forward[k1off];
+                        int y1 = offset + x1 - k1off;
+                        if (x1 >= n - x2) {
+                            return new int[] { aLo + x1, bLo + y1 };
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** The lines compared. */
+    private final int[] _a, _b;
+
+    /** For each line of _a, the index of its match in _b, or -1. */
+    private final int[] _match;
+}
@@ -1,8 +1,12 @@
 package gitlet;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Zixian Zang
@@ -10,13 +14,17 @@ import java.util.Iterator;
  */
 public class Main {
 
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
+    /** Usage: java gitlet.Main [--trace[=FILE]] ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) {
+        if (args != null) {
+            args = Trace.init(args);
+        }
         if (args == null | args.length == 0) {
             System.out.println("Please enter a command.");
             System.exit(0);
         }
+        Utils.forgetObjectFormat();
         if (!args[0].equals("init")) {
             File git = new File(".gitlet");
             if (!git.exists() | !git.isDirectory()) {
@@ -65,6 +73,26 @@ public class Main {
             doFetch(args);
         } else if (indicator.equals("pull")) {
             doPull(args);
+        } else if (indicator.equals("migrate-blobs")) {
+            doMigrateBlobs(args);
+        } else if (indicator.equals("convert")) {
+            doConvert(args);
+        } else if (indicator.equals("gc")) {
+            doGc(args);
+        } else if (indicator.equals("fsck")) {
+            doFsck(args);
+        } else if (indicator.equals("merge-tree")) {
+            doMergeTree(args);
+        } else if (indicator.equals("cherry-pick")) {
+            doCherryPick(args);
+        } else if (indicator.equals("rebase")) {
+            doRebase(args);
+        } else if (indicator.equals("annotate")) {
+            doAnnotate(args);
+        } else if (indicator.equals("diff")) {
+            doDiff(args);
+        } else if (indicator.equals("watch")) {
+            doWatch(args);
         } else {
             System.out.println("No command with that name exists.");
             System.exit(0);
@@ -74,25 +102,48 @@ public class Main {
 
     /** Check ARGUMENT for init and execute. */
     static void doinit(String[] argument) {
-        if (argument.length > 1 | !argument[0].equals("init")) {
+        if (argument.length > 2 | !argument[0].equals("init")) {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
-        init();
+        String format = Utils.SHA1;
+        if (argument.length == 2) {
+            String option = argument[1];
+            if (!option.startsWith(OBJECT_FORMAT_OPTION)) {
+                System.out.println("Incorrect operands.");
+                System.exit(0);
+            }
+            format = option.substring(OBJECT_FORMAT_OPTION.length());
+            if (!format.equals(Utils.SHA1) && !format.equals(Utils.SHA256)) {
+                System.out.println("Unknown object format.");
+                System.exit(0);
+            }
+        }
+        init(format);
     }
 
+    /** Option of init choosing the digest that names objects. */
+    static final String OBJECT_FORMAT_OPTION = "--object-format=";
 
-    /** Do init command. */
+    /** Do init command, naming objects by SHA-1. */
     static void init() {
+        init(Utils.SHA1);
+    }
+
+    /** Do init command, naming objects by the digest of object format
+     *  FORMAT. */
+    static void init(String format) {
         File repo = new File(Utils.repoLoc());
         File commits = new File(Utils.commitObjectDir());
         File blobs = new File(Utils.blobObjectDir());
+        File trees = new File(Utils.treeObjectDir());
         if (repo.exists()) {
             System.out.println("A Gitlet version-control system "
                     + "already exists in the current directory.");
             System.exit(0);
         }
-        commits.mkdirs(); blobs.mkdirs();
+        commits.mkdirs(); blobs.mkdirs(); trees.mkdirs();
+        Utils.setObjectFormat(format);
         CommitTree tree = CommitTree.init();
         tree.serializeTree();
     }
@@ -112,9 +163,8 @@ public class Main {
 
     /** Do add command. Adding file FILENAME. */
     static void add(String filename) {
-        File working = new File(Utils.workingDirectory());
-        String[] allfiles = working.list();
-        if (!Utils.arrayContains(allfiles, filename)) {
+        File file = new File(Utils.workingDirectory(), filename);
+        if (!file.isFile()) {
             System.out.println("File does not exist.");
             System.exit(0);
         }
@@ -154,6 +204,10 @@ public class Main {
 
     /** Check ARGUMENT for log and execute. */
     static void dolog(String[] argument) {
+        if (argument.length == 3 && argument[1].equals("--")) {
+            log(argument[2]);
+            return;
+        }
         if (argument.length > 1 | !argument[0].equals("log")) {
             System.out.println("Incorrect operands.");
             System.exit(0);
@@ -175,6 +229,27 @@ public class Main {
         System.out.println();
     }
 
+    /** Do log command for the commits of the current branch that changed
+     *  the file PATH from their first parent. A commit whose filter of
+     *  changed paths rules PATH out is passed over without reading its
+     *  tree; the others are checked by looking PATH up in both trees. */
+    static void log(String path) {
+        CommitTree repo = getrepo();
+        Commit tracker = Utils.getCommit(repo.curHeadCommit());
+        while (tracker != null) {
+            Commit parent = tracker.hasParent()
+                ? Utils.getCommit(tracker.parent1()) : null;
+            if (tracker.mayHaveChanged(path)
+                && !Objects.equals(tracker.blobOf(path),
+                                   parent == null ? null
+                                   : parent.blobOf(path))) {
+                System.out.println(tracker);
+                System.out.println();
+            }
+            tracker = parent;
+        }
+    }
+
     /** Check ARGUMENT for checkout and execute. */
     static void docheckout(String[] argument) {
         if (argument.length == 3) {
@@ -252,17 +327,9 @@ public class Main {
     /** Do global-log command. */
     static void globalLog() {
         CommitTree repo = getrepo();
-        HashSet<String> allCommit = repo.allCommits();
-        Iterator<String> iter = allCommit.iterator();
-        while (iter.hasNext()) {
-            Commit cur = Utils.getCommit(iter.next());
-            if (iter.hasNext()) {
-                System.out.println(cur);
-                System.out.println();
-            } else {
-                System.out.println(cur);
-                System.out.println();
-            }
+        for (ObjectId id : repo.allCommits()) {
+            System.out.println(Utils.getCommit(id.toString()));
+            System.out.println();
         }
     }
 
@@ -288,7 +355,7 @@ public class Main {
         staged.remove(filename);
         if (lastC.containsKey(filename)) {
             repo.removeArea().add(filename);
-            Utils.restrictedDelete(filename);
+            Utils.deleteFromWD(filename);
         }
         repo.serializeTree();
     }
@@ -359,18 +426,45 @@ public class Main {
 
     /** Check ARGUMENT for merge and execute. */
     static void doMerge(String[] argument) {
-        if (argument.length != 2 | !argument[0].equals("merge")) {
+        if (argument.length < 2 | !argument[0].equals("merge")) {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
-        merge(argument[1]);
+        if (argument.length == 2) {
+            merge(argument[1]);
+        } else {
+            merge(Arrays.asList(argument).subList(1, argument.length));
+        }
+    }
+
+    /** Do merge command, merging the GIVENBRANCHES into the current
+     *  branch at once. */
+    static void merge(List<String> givenBranches) {
+        CommitTree repo = getrepo();
+        if (givenBranches.size() >= MergeBases.MAX_HEADS) {
+            System.out.println("Too many branches to merge at once.");
+            System.exit(0);
+        }
+        for (String givenBranch : givenBranches) {
+            if (repo.curBranch().equals(givenBranch)) {
+                System.out.println("Cannot merge a branch with itself.");
+                System.exit(0);
+            }
+            if (!repo.branches().containsKey(givenBranch)) {
+                System.out.println("A branch with that name does not exist.");
+                System.exit(0);
+            }
+        }
+        checkClean(repo);
+        repo.octopusMerge(givenBranches);
+        repo.serializeTree();
     }
 
     /** Do merge command, merge GIVENBRANCH into current Branch. */
     static void merge(String givenBranch) {
         CommitTree repo = getrepo();
         String curBranch = repo.curBranch();
-        HashMap<String, String> branches = repo.branches();
+        HashMap<String, ObjectId> branches = repo.branches();
         if (curBranch.equals(givenBranch)) {
             System.out.println("Cannot merge a branch with itself.");
             System.exit(0);
@@ -393,6 +487,53 @@ public class Main {
         repo.serializeTree();
     }
 
+    /** Check ARGS for cherry-pick and execute. */
+    static void doCherryPick(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        CommitTree repo = getrepo();
+        checkClean(repo);
+        repo.cherryPick(args[1]);
+        repo.serializeTree();
+    }
+
+    /** Check ARGS for rebase and execute. */
+    static void doRebase(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        CommitTree repo = getrepo();
+        if (repo.curBranch().equals(args[1])) {
+            System.out.println("Cannot rebase a branch onto itself.");
+            System.exit(0);
+        }
+        if (!repo.branches().containsKey(args[1])) {
+            System.out.println("A branch with that name does not exist.");
+            System.exit(0);
+        }
+        checkClean(repo);
+        repo.rebase(args[1]);
+        repo.serializeTree();
+    }
+
+    /** Exit with a message unless the stage of REPO is empty and no
+     *  untracked file could be overwritten, as commits are replayed or
+     *  merged in the object store. */
+    static void checkClean(CommitTree repo) {
+        if (!repo.emptyStage()) {
+            System.out.println("You have uncommitted changes.");
+            System.exit(0);
+        }
+        if (!repo.untrackedFiles().isEmpty()) {
+            System.out.println("There is an untracked file in the way;"
+                    + " delete it or add it first.");
+            System.exit(0);
+        }
+    }
+
     /** Check AGRS for add remote and execute.
      * @param args argument array*/
     static void doAddRemote(String[] args) {
@@ -426,14 +567,16 @@ public class Main {
         repo.push(args[1], args[2]);
     }
 
-    /** Check ARGS for fetch and execute. */
+    /** Check ARGS for fetch and execute. A trailing --partial fetches
+     * commits only. */
     static void doFetch(String[] args) {
-        if (args.length != 3) {
+        boolean partial = args.length == 4 && args[3].equals("--partial");
+        if (args.length != 3 && !partial) {
             System.out.println("Incorrect operands.");
             System.exit(0);
         }
         CommitTree repo = getrepo();
-        repo.fetch(args[1], args[2]);
+        repo.fetch(args[1], args[2], partial);
         repo.serializeTree();
     }
 
@@ -448,11 +591,139 @@ public class Main {
         repo.serializeTree();
     }
 
+    /** Check ARGS for migrate-blobs and execute. */
+    static void doMigrateBlobs(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        CommitTree repo = getrepo();
+        repo.migrateBlobs();
+        repo.serializeTree();
+    }
+
+    /** Check ARGS for convert and execute. */
+    static void doConvert(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        CommitTree repo = getrepo();
+        repo.convertObjects();
+        repo.serializeTree();
+    }
+
+    /** Option of gc giving the grace period in seconds. */
+    static final String GRACE_OPTION = "--grace=";
+
+    /** Check ARGS for gc and execute. */
+    static void doGc(String[] args) {
+        if (args.length > 2
+            || args.length == 2 && !args[1].startsWith(GRACE_OPTION)) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        long grace = GarbageCollector.DEFAULT_GRACE;
+        if (args.length == 2) {
+            try {
+                grace = Long.parseLong(args[1].substring(
+                    GRACE_OPTION.length()));
+            } catch (NumberFormatException excp) {
+                grace = -1;
+            }
+            if (grace < 0) {
+                System.out.println("Incorrect operands.");
+                System.exit(0);
+            }
+        }
+        CommitTree repo = getrepo();
+        repo.gc(grace);
+        repo.serializeTree();
+    }
+
+    /** Check ARGS for fsck and execute. */
+    static void doFsck(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        getrepo().fsck();
+    }
+
+    /** Check ARGS for merge-tree and execute. */
+    static void doMergeTree(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        CommitTree repo = getrepo();
+        repo.mergeTree(args[1], args[2]);
+        repo.serializeTree();
+    }
+
+    /** Check ARGS for annotate and execute. */
+    static void doAnnotate(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        getrepo().annotate(args[1]);
+    }
+
+    /** Check ARGS for diff and execute. */
+    static void doDiff(String[] args) {
+        boolean content = args.length == 4 && args[3].equals(CONTENT_OPTION);
+        if (args.length != 3 && !content) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        getrepo().diff(args[1], args[2], content);
+    }
+
+    /** Option of diff asking for the changed lines of each file. */
+    static final String CONTENT_OPTION = "--content";
+
+    /** Check ARGS for watch and execute. Watch stays running, reading
+     * one command per line from the standard input until it ends or
+     * reads exit. It answers status from a watcher of the working
+     * directory; all other commands are run as usual from elsewhere. */
+    static void doWatch(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        WorkingTreeWatcher watcher = new WorkingTreeWatcher();
+        BufferedReader in =
+            new BufferedReader(new InputStreamReader(System.in));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("exit")) {
+                    break;
+                } else if (line.equals("status")) {
+                    watcher.status(getrepo());
+                } else if (!line.isEmpty()) {
+                    System.out.println("Only status is available "
+                            + "in watch mode.");
+                }
+                System.out.flush();
+            }
+        } catch (IOException excp) {
+            System.out.println("Cannot read commands.");
+        }
+        watcher.close();
+    }
+
     /** Return the CommitTree object stored by previous initialization. */
     static CommitTree getrepo() {
         File repoDir = new File(Utils.repoLoc());
-        CommitTree repo = Utils.readObject(repoDir, CommitTree.class);
-        return repo;
+        Trace.begin(Trace.Phase.LOAD);
+        try {
+            return Utils.readObject(repoDir, CommitTree.class);
+        } finally {
+            Trace.end();
+        }
     }
 
 }
@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/** The split points of one commit with each of several others, found by
+ *  one walk of their shared history. Every commit reachable from one of
+ *  the heads is painted with the set of heads it is reachable from, kept
+ *  as the bits of a long, and is walked again whenever that set grows,
+ *  so no commit is read twice and none is walked more than once per
+ *  head. A breadth-first walk from the first head over the commits read
+ *  then finds, for each other head, the nearest commit painted with it:
+ *  the split point findSplitPoint finds for the two alone.
+ *  @author Zixian Zang
+ */
+class MergeBases {
+
+    /** Most heads that can be compared at once. */
+    static final int MAX_HEADS = Long.SIZE;
+
+    /** The split points of the first of the commits with IDs HEADS with
+     *  each of the others, where there are at most MAX_HEADS of them.
+     *  LABEL names the others in the recorded event. */
+    MergeBases(List<String> heads, String label) {
+        GitletEvents.SplitPoint event = new GitletEvents.SplitPoint();
+        event.begin();
+        _heads = new ObjectId[heads.size()];
+        ArrayDeque<ObjectId> queue = new ArrayDeque<>();
+        for (int i = 0; i < _heads.length; i += 1) {
+            _heads[i] = ObjectId.parse(heads.get(i));
+            paint(_heads[i], 1L << i, queue);
+        }
+        while (!queue.isEmpty()) {
+            ObjectId id = queue.poll();
+            long reached = _painted.get(id);
+            for (String parent : CommitTree.commit(id, _read).parents()) {
+                paint(ObjectId.parse(parent), reached, queue);
+            }
+        }
+        _bases = new String[_heads.length];
+        findBases();
+        String found =
+            String.join(" ", Arrays.copyOfRange(_bases, 1, _bases.length));
+        event.finish(label, found, _read.size());
+    }
+
+    /** Add the heads in HEADS to those ID is painted with, adding ID to
+     *  QUEUE if they were not all there. */
+    private void paint(ObjectId id, long heads, ArrayDeque<ObjectId> queue) {
+        Long old = _painted.get(id);
+        if (old == null || (old | heads) != old) {
+            _painted.put(id, old == null ? heads : old | heads);
+            queue.add(id);
+        }
+    }
+
+    /** Find the split point of my first head with each of the others. */
+    private void findBases() {
+        int left = _heads.length - 1;
+        IdSet traveled = new IdSet();
+        ArrayDeque<ObjectId> storing = new ArrayDeque<>();
+        storing.add(_heads[0]);
+        while (left > 0 && !storing.isEmpty()) {
+            ObjectId cur = storing.poll();
+            if (!traveled.add(cur)) {
+                continue;
+            }
+            long heads = _painted.get(cur);
+            for (int i = 1; i < _heads.length; i += 1) {
+                if (_bases[i] == null && (heads & (1L << i)) != 0) {
+                    _bases[i] = cur.toString();
+                    left -= 1;
+                }
+            }
+            for (String parent : CommitTree.commit(cur, _read).parents()) {
+                storing.add(ObjectId.parse(parent));
+            }
+        }
+        if (left > 0) {
+            throw new GitletException("No common ancestor");
+        }
+    }
+
+    /** Return the ID of the split point of my first head with head I. */
+    String base(int i) {
+        return _bases[i];
+    }
+
+    /** Return true if head J is head I or one of its ancestors. */
+    boolean reaches(int i, int j) {
+        return (_painted.get(_heads[j]) & (1L << i)) != 0;
+    }
+
+    /** IDs of the heads. */
+    private final ObjectId[] _heads;
+
+    /** For every commit reachable from a head, the heads it is reachable
+     *  from, as bits. */
+    private final IdMap<Long> _painted = new IdMap<>();
+
+    /** Commits read. */
+    private final IdMap<Commit> _read = new IdMap<>();
+
+    /** Split point of my first head with each head, or null for the
+     *  first head itself. */
+    private final String[] _bases;
+}
@@ -0,0 +1,346 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** A merge of two commits computed in the object store alone. The merged
+ *  blobs, trees and commit are stored, but the working directory, the
+ *  stage and the branches are left as they are, so merges of any number
+ *  of pairs of commits may run at once in one process. Every path takes
+ *  the version merge would give it; a path in conflict gets a blob with
+ *  conflict markers and is listed among the conflicts, and a merge with
+ *  conflicts makes a tree but no commit.
+ *
+ *  The blobs of the commits merged must be in the store: blobs left in a
+ *  promisor remote are to be fetched beforehand.
+ *  @author Zixian Zang
+ */
+class MergeTree {
+
+    /** What a merge does with one path. */
+    enum Action {
+        /** Keep the current version, or its absence. */
+        KEEP,
+        /** Take the given version. */
+        TAKE,
+        /** Remove the path. */
+        REMOVE,
+        /** Merge the lines of the current and given versions. */
+        MERGE,
+        /** Put both versions, whole, between conflict markers. */
+        CONFLICT
+    }
+
+    /** Return what to do with a path whose versions at the split point,
+     *  in the current commit and in the given commit are the blobs
+     *  SPLITID, CURID and GIVENID, any of which may be null if the path
+     *  is absent there. */
+    static Action resolve(String splitID, String curID, String givenID) {
+        if (Objects.equals(givenID, splitID)
+            || Objects.equals(givenID, curID)) {
+            return Action.KEEP;
+        } else if (Objects.equals(curID, splitID)) {
+            return givenID == null ? Action.REMOVE : Action.TAKE;
+        } else if (splitID != null && curID != null && givenID != null) {
+            return Action.MERGE;
+        }
+        return Action.CONFLICT;
+    }
+
+    /** Return a stream of the whole-file conflict between the blobs
+     *  CURID and GIVENID, either of which may be null. The blobs are read
+     *  as the stream is, a chunk at a time. */
+    static InputStream conflictStream(String curID, String givenID) {
+        ArrayList<InputStream> parts = new ArrayList<>();
+        parts.add(markerStream(ThreeWayMerge.OURS_MARKER));
+        if (curID != null) {
+            parts.add(Utils.getBlob(curID).openStream());
+        }
+        parts.add(markerStream(ThreeWayMerge.SEPARATOR));
+        if (givenID != null) {
+            parts.add(Utils.getBlob(givenID).openStream());
+        }
+        parts.add(markerStream(ThreeWayMerge.THEIRS_MARKER));
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    /** Return a blob of the whole-file conflict between the blobs CURID
+     *  and GIVENID, either of which may be null, built from their
+     *  streams. */
+    private static Blob conflictBlob(String curID, String givenID) {
+        try (InputStream in = conflictStream(curID, givenID)) {
+            return new Blob(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream of the conflict marker MARKER. */
+    private static InputStream markerStream(String marker) {
+        return new ByteArrayInputStream(
+            marker.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** A path left in conflict by a merge. */
+    static class Conflict {
+
+        /** A conflict of KIND on PATH, whose merged version, with its
+         *  conflict markers, is the blob MERGED. */
+        Conflict(String path, String kind, String merged) {
+            _path = path;
+            _kind = kind;
+            _merged = merged;
+        }
+
+        /** Return my path. */
+        String path() {
+            return _path;
+        }
+
+        /** Return my kind: content, add/add or modify/delete. */
+        String kind() {
+            return _kind;
+        }
+
+        /** Return the ID of the blob with my conflict markers. */
+        String merged() {
+            return _merged;
+        }
+
+        @Override
+        public String toString() {
+            return "CONFLICT (" + _kind + "): " + _path;
+        }
+
+        /** Path in conflict. */
+        private final String _path;
+
+        /** Kind of the conflict. */
+        private final String _kind;
+
+        /** ID of the merged blob. */
+        private final String _merged;
+    }
+
+    /** A merge of the commit with ID THEIRS into the one with ID OURS. */
+    MergeTree(String ours, String theirs) {
+        this(CommitTree.splitPoint(ours, theirs, theirs), ours, theirs);
+    }
+
+    /** A merge of the changes from the commit with ID BASE to the one with
+     *  ID THEIRS into the one with ID OURS. BASE is null to merge in all
+     *  the files of THEIRS as added. */
+    MergeTree(String base, String ours, String theirs) {
+        _ours = ours;
+        _theirs = theirs;
+        if (theirs.equals(base)) {
+            _result = ours;
+            _tree = Utils.getCommit(ours).tree();
+        } else if (ours.equals(base)) {
+            _result = theirs;
+            _tree = Utils.getCommit(theirs).tree();
+        } else {
+            _tree = mergeTrees(base == null ? null
+                               : Utils.getCommit(base).tree(),
+                               Utils.getCommit(ours).tree(),
+                               Utils.getCommit(theirs).tree(), _conflicts);
+        }
+    }
+
+    /** Merge the changes from the tree SPLITTREE to the tree GIVENTREE
+     *  into the tree CURTREE, path by path in parallel, and return the ID
+     *  of the stored merged tree. SPLITTREE is null if there is no split
+     *  point. Only the paths plan gives are looked at, so subtrees that
+     *  either side left alone are never read. Add the paths left in
+     *  conflict to CONFLICTS, by path. */
+    static String mergeTrees(String splitTree, String curTree,
+                             String givenTree, List<Conflict> conflicts) {
+        List<String[]> paths = plan(Tree.diff(splitTree, curTree),
+                                    Tree.diff(splitTree, givenTree));
+        Map<String, String> added = new ConcurrentHashMap<>();
+        Set<String> removed = ConcurrentHashMap.newKeySet();
+        Queue<Conflict> found = new ConcurrentLinkedQueue<>();
+        paths.parallelStream().forEach(p ->
+            mergePath(p[0], p[1], p[2], p[3], added, removed, found));
+        HashMap<String, String> changes = new HashMap<>(added);
+        for (String f : removed) {
+            changes.put(f, null);
+        }
+        ArrayList<Conflict> sorted = new ArrayList<>(found);
+        sorted.sort(Comparator.comparing(Conflict::path));
+        conflicts.addAll(sorted);
+        return Tree.apply(curTree, changes);
+    }
+
+    /** Return the paths a merge has to decide, each as {path, version at
+     *  the split point, current version, given version} for resolve,
+     *  where OURS and THEIRS are the diffs of the sorted trees from the
+     *  split point to the current and to the given commit. Those are the
+     *  paths the given commit changed, except where Renames finds that
+     *  a side renamed a file the other side edited: the edits are then
+     *  carried to the new path, instead of the old path being left in a
+     *  modify/delete conflict. */
+    static List<String[]> plan(TreeMap<String, String[]> ours,
+                               TreeMap<String, String[]> theirs) {
+        Map<String, String> ourRenames = Renames.detect(ours);
+        Map<String, String> theirRenames = Renames.detect(theirs);
+        HashMap<String, String[]> moved = new HashMap<>();
+        for (Map.Entry<String, String> e : theirRenames.entrySet()) {
+            String from = e.getKey(), to = e.getValue();
+            String split = theirs.get(from)[0], given = theirs.get(to)[1];
+            String cur = ours.containsKey(from) ? ours.get(from)[1] : split;
+            if (to.equals(ourRenames.get(from))) {
+                moved.put(to, new String[] {to, split, ours.get(to)[1],
+                                            given});
+            } else if (cur != null && !cur.equals(split)
+                       && !ours.containsKey(to)) {
+                if (given.equals(split) || given.equals(cur)) {
+                    moved.put(to, new String[] {to, null, null, cur});
+                } else {
+                    moved.put(to, new String[] {to, split, cur, given});
+                }
+                moved.put(from, new String[] {from, cur, cur, null});
+            }
+        }
+        HashSet<String> dropped = new HashSet<>();
+        for (Map.Entry<String, String> e : ourRenames.entrySet()) {
+            String from = e.getKey(), to = e.getValue();
+            String[] change = theirs.get(from);
+            if (change != null && change[1] != null
+                && !theirs.containsKey(to)) {
+                moved.put(to, new String[] {to, change[0], ours.get(to)[1],
+                                            change[1]});
+                dropped.add(from);
+            }
+        }
+        ArrayList<String[]> result = new ArrayList<>(moved.values());
+        for (Map.Entry<String, String[]> e : theirs.entrySet()) {
+            String f = e.getKey(), splitID = e.getValue()[0];
+            if (!moved.containsKey(f) && !dropped.contains(f)) {
+                String curID =
+                    ours.containsKey(f) ? ours.get(f)[1] : splitID;
+                result.add(new String[] {f, splitID, curID,
+                                         e.getValue()[1]});
+            }
+        }
+        return result;
+    }
+
+    /** Merge path F, whose versions are the blobs SPLITID, CURID and
+     *  GIVENID as for resolve, putting its new blob into ADDED, or F into
+     *  REMOVED if it goes, and noting any conflict in CONFLICTS. */
+    private static void mergePath(String f, String splitID, String curID,
+                                  String givenID, Map<String, String> added,
+                                  Set<String> removed,
+                                  Queue<Conflict> conflicts) {
+        Blob merged;
+        switch (resolve(splitID, curID, givenID)) {
+        case TAKE:
+            added.put(f, givenID);
+            return;
+        case REMOVE:
+            removed.add(f);
+            return;
+        case MERGE:
+            merged = mergeLines(f, splitID, curID, givenID, conflicts);
+            if (merged != null) {
+                added.put(f, merged.blobShaID());
+                return;
+            }
+            merged = conflictBlob(curID, givenID);
+            break;
+        case CONFLICT:
+            merged = conflictBlob(curID, givenID);
+            break;
+        default:
+            return;
+        }
+        merged.serializeBlob();
+        added.put(f, merged.blobShaID());
+        String kind = splitID == null ? "add/add"
+            : curID == null || givenID == null ? "modify/delete" : "content";
+        conflicts.add(new Conflict(f, kind, merged.blobShaID()));
+    }
+
+    /** Return the stored blob merging, line by line, the changes from the
+     *  blob SPLITID to the blob GIVENID into the blob CURID, as path F,
+     *  noting F in CONFLICTS if some lines were in conflict. Return null
+     *  if one of the blobs is binary. The three versions and the result
+     *  are held in memory whole, chunked blobs included, so only files
+     *  that fit in memory several times over can be merged by line. */
+    static Blob mergeLines(String f, String splitID, String curID,
+                           String givenID, Collection<Conflict> conflicts) {
+        byte[] base = Utils.getBlob(splitID).blobInByte();
+        byte[] ours = Utils.getBlob(curID).blobInByte();
+        byte[] theirs = Utils.getBlob(givenID).blobInByte();
+        if (ThreeWayMerge.isBinary(base) || ThreeWayMerge.isBinary(ours)
+            || ThreeWayMerge.isBinary(theirs)) {
+            return null;
+        }
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        boolean conflict;
+        try {
+            conflict = new ThreeWayMerge(base, ours, theirs).writeTo(merged);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Blob result = new Blob(merged.toByteArray());
+        result.serializeBlob();
+        if (conflict) {
+            conflicts.add(new Conflict(f, "content", result.blobShaID()));
+        }
+        return result;
+    }
+
+    /** Return the ID of the merged tree. */
+    String tree() {
+        return _tree;
+    }
+
+    /** Return the paths left in conflict, by path. */
+    List<Conflict> conflicts() {
+        return _conflicts;
+    }
+
+    /** Return the ID of the commit of the merge with message MSG, making
+     *  it unless one of the two commits already contains the other, or
+     *  null if there were conflicts. */
+    String commit(String msg) {
+        if (_result == null && _conflicts.isEmpty()) {
+            String time = Utils.formatt().format(new Date());
+            _result = new Commit(msg, _ours, _theirs, _tree, time).commitID();
+        }
+        return _result;
+    }
+
+    /** IDs of the commits merged. */
+    private final String _ours, _theirs;
+
+    /** ID of the merged tree. */
+    private final String _tree;
+
+    /** ID of the commit of the merge, once there is one. */
+    private String _result;
+
+    /** Paths left in conflict. */
+    private final List<Conflict> _conflicts = new ArrayList<>();
+}
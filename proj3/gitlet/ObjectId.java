@@ -0,0 +1,205 @@
+package gitlet;
+
+/** The 20-byte SHA-1 or 32-byte SHA-256 ID of a stored object, held as
+ *  primitives rather than as 40 or 64 hexadecimal characters. IDs are
+ *  parsed from hex where they enter the object graph and printed as hex
+ *  only where a command shows them or names a file with them; in between,
+ *  they are compared and hashed as numbers. The last twelve bytes of a
+ *  SHA-256 ID are kept in a long and an int that are 0 for SHA-1.
+ *  @author Zixian Zang
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** Length of a SHA-1 ID in bytes. */
+    static final int LENGTH = 20;
+
+    /** Length of a SHA-256 ID in bytes. */
+    static final int WIDE_LENGTH = 32;
+
+    /** The SHA-1 ID whose bytes are, in order, HI, MID and LO. */
+    ObjectId(long hi, long mid, int lo) {
+        this(hi, mid, lo, 0, 0, false);
+    }
+
+    /** The ID whose bytes are, in order, HI, MID, LO and, if WIDE, TAIL
+     *  and END. */
+    ObjectId(long hi, long mid, int lo, long tail, int end, boolean wide) {
+        _hi = hi;
+        _mid = mid;
+        _lo = lo;
+        _tail = tail;
+        _end = end;
+        _wide = wide;
+    }
+
+    /** Return the ID written in hexadecimal as HEX. */
+    static ObjectId parse(String hex) {
+        if (hex.length() == 2 * LENGTH) {
+            return new ObjectId(parseLong(hex, 0), parseLong(hex, 16),
+                                (int) parseHex(hex, 32, 8));
+        } else if (hex.length() == 2 * WIDE_LENGTH) {
+            return new ObjectId(parseLong(hex, 0), parseLong(hex, 16),
+                                (int) parseHex(hex, 32, 8),
+                                parseLong(hex, 40),
+                                (int) parseHex(hex, 56, 8), true);
+        }
+        throw new IllegalArgumentException("not an object ID: " + hex);
+    }
+
+    /** Return the ID made of the bytes of RAW, a SHA-1 or SHA-256
+     *  digest. */
+    static ObjectId fromBytes(byte[] raw) {
+        if (raw.length == WIDE_LENGTH) {
+            return new ObjectId(getLong(raw, 0), getLong(raw, 8),
+                                (int) getBytes(raw, 16, 4),
+                                getLong(raw, 20), (int) getBytes(raw, 28, 4),
+                                true);
+        }
+        return new ObjectId(getLong(raw, 0), getLong(raw, 8),
+                            (int) getBytes(raw, 16, 4));
+    }
+
+    /** Return the 16 hex digits of HEX starting at START as a long. */
+    private static long parseLong(String hex, int start) {
+        return parseHex(hex, start, 16);
+    }
+
+    /** Return the N hex digits of HEX starting at START as a number. */
+    private static long parseHex(String hex, int start, int n) {
+        long result = 0;
+        for (int i = start; i < start + n; i += 1) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("not an object ID: "
+                                                   + hex);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    /** Return the 8 bytes of RAW starting at START as a long. */
+    private static long getLong(byte[] raw, int start) {
+        return getBytes(raw, start, 8);
+    }
+
+    /** Return the N bytes of RAW starting at START as a number. */
+    private static long getBytes(byte[] raw, int start, int n) {
+        long result = 0;
+        for (int i = start; i < start + n; i += 1) {
+            result = (result << 8) | (raw[i] & 0xff);
+        }
+        return result;
+    }
+
+    /** Return my bytes. */
+    byte[] toBytes() {
+        byte[] result = new byte[_wide ? WIDE_LENGTH : LENGTH];
+        putBytes(result, 0, _hi, 8);
+        putBytes(result, 8, _mid, 8);
+        putBytes(result, 16, _lo, 4);
+        if (_wide) {
+            putBytes(result, 20, _tail, 8);
+            putBytes(result, 28, _end, 4);
+        }
+        return result;
+    }
+
+    /** Store the low N bytes of VALUE into RAW from START on. */
+    private static void putBytes(byte[] raw, int start, long value, int n) {
+        for (int i = start + n - 1; i >= start; i -= 1) {
+            raw[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /** Return my first eight bytes. */
+    long hi() {
+        return _hi;
+    }
+
+    /** Return my next eight bytes. */
+    long mid() {
+        return _mid;
+    }
+
+    /** Return my bytes 16 to 19. */
+    int lo() {
+        return _lo;
+    }
+
+    /** Return my bytes 20 to 27; 0 for SHA-1. */
+    long tail() {
+        return _tail;
+    }
+
+    /** Return my bytes 28 to 31; 0 for SHA-1. */
+    int end() {
+        return _end;
+    }
+
+    /** Return true if I am a SHA-256 ID. */
+    boolean wide() {
+        return _wide;
+    }
+
+    /** Return my hexadecimal form. */
+    @Override
+    public String toString() {
+        return Utils.toHex(toBytes());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _hi == other._hi && _mid == other._mid && _lo == other._lo
+            && _tail == other._tail && _end == other._end
+            && _wide == other._wide;
+    }
+
+    /** Return a hash of me. The bytes of an ID are already uniformly
+     *  distributed, so some of them serve. */
+    @Override
+    public int hashCode() {
+        return (int) _hi;
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(_hi, other._hi);
+        if (c == 0) {
+            c = Long.compareUnsigned(_mid, other._mid);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_lo, other._lo);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(_tail, other._tail);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_end, other._end);
+        }
+        if (c == 0) {
+            c = Boolean.compare(_wide, other._wide);
+        }
+        return c;
+    }
+
+    /** My first sixteen bytes, in two parts. */
+    private final long _hi, _mid;
+
+    /** My bytes 16 to 19. */
+    private final int _lo;
+
+    /** My bytes 20 to 27 if I am wide, else 0. */
+    private final long _tail;
+
+    /** My bytes 28 to 31 if I am wide, else 0. */
+    private final int _end;
+
+    /** True if I am a SHA-256 ID. */
+    private final boolean _wide;
+}
@@ -0,0 +1,304 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** The index of the history of each path: for every path, the changes
+ *  made to it by commits from their first parents, in the order the
+ *  commits were recorded, so that a parent comes before its children.
+ *  Each change names the commit and the blobs of the path before and
+ *  after it. The changes of a path are kept in their own file, named by
+ *  the hash of the path, to which the changes of a new commit are
+ *  appended; the K changes of a path are read by reading one file of K
+ *  lines, whatever the length of the history.
+ *
+ *  A repository made before the index gets it built from all of its
+ *  commits when the first commit after that is recorded. Changes made by
+ *  commits that were later collected as garbage are passed over.
+ *  @author Zixian Zang
+ */
+class PathHistory {
+
+    /** One change of a path. */
+    static class Change {
+
+        /** The change made to a path by the commit with ID COMMIT, from
+         *  blob BEFORE to blob AFTER, either of which is null where the
+         *  path was absent. */
+        Change(String commit, String before, String after) {
+            _commit = commit;
+            _before = before;
+            _after = after;
+        }
+
+        /** Return the ID of the commit that made me. */
+        String commit() {
+            return _commit;
+        }
+
+        /** Return the ID of the blob before me, or null. */
+        String before() {
+            return _before;
+        }
+
+        /** Return the ID of the blob after me, or null. */
+        String after() {
+            return _after;
+        }
+
+        /** ID of the commit. */
+        private final String _commit;
+
+        /** IDs of the blobs before and after. */
+        private final String _before, _after;
+    }
+
+    /** Add the changes made by the commits with IDS, in that order, to
+     *  the index. KNOWN holds the IDs of all commits of the repository,
+     *  IDS among them; if there is no index yet, it is built from them
+     *  instead. */
+    static void record(List<String> ids, IdSet known) {
+        if (!new File(Utils.historyDir()).isDirectory()) {
+            new File(Utils.historyDir()).mkdirs();
+            ids = parentsFirst(known);
+        }
+        append(ids, Utils.historyDir());
+    }
+
+    /** Add the changes made by the commits with IDS, in that order, to
+     *  the index in directory DIR, which may be that of another
+     *  repository, if there is one; the commits are read from this
+     *  repository. A repository without an index builds it itself. */
+    static void append(List<String> ids, String dir) {
+        if (!new File(dir).isDirectory()) {
+            return;
+        }
+        HashMap<String, StringBuilder> lines = new HashMap<>();
+        for (String id : ids) {
+            addChanges(Utils.getCommit(id), lines);
+        }
+        for (Map.Entry<String, StringBuilder> e : lines.entrySet()) {
+            try {
+                Files.write(file(dir, e.getKey()).toPath(),
+                            e.getValue().toString()
+                            .getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+            } catch (IOException excp) {
+                throw new GitletException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Add the lines of the index recording the changes C made from its
+     *  first parent to LINES, by path. */
+    private static void addChanges(Commit c,
+                                   Map<String, StringBuilder> lines) {
+        String parentTree = c.hasParent()
+            ? Utils.getCommit(c.parent1()).tree() : null;
+        for (Map.Entry<String, String[]> e
+                 : Tree.diff(parentTree, c.tree()).entrySet()) {
+            String[] pair = e.getValue();
+            lines.computeIfAbsent(e.getKey(), k -> new StringBuilder())
+                .append(c.commitID()).append(' ')
+                .append(pair[0] == null ? NONE : pair[0]).append(' ')
+                .append(pair[1] == null ? NONE : pair[1]).append('\n');
+        }
+    }
+
+    /** Return the commits with IDs in KNOWN ordered so that each comes
+     *  after those of its parents that are in KNOWN. */
+    private static List<String> parentsFirst(IdSet known) {
+        ArrayList<ObjectId> starts = new ArrayList<>(known.size());
+        known.forEach(starts::add);
+        Collections.sort(starts);
+        IdSet visited = new IdSet(known.size());
+        ArrayList<String> result = new ArrayList<>();
+        for (ObjectId start : starts) {
+            ArrayDeque<ObjectId> stack = new ArrayDeque<>();
+            ArrayDeque<Boolean> expanded = new ArrayDeque<>();
+            stack.push(start);
+            expanded.push(false);
+            while (!stack.isEmpty()) {
+                ObjectId id = stack.pop();
+                if (expanded.pop()) {
+                    result.add(id.toString());
+                } else if (visited.add(id)) {
+                    stack.push(id);
+                    expanded.push(true);
+                    for (String hex
+                             : Utils.getCommit(id.toString()).parents()) {
+                        ObjectId parent = ObjectId.parse(hex);
+                        if (known.contains(parent)
+                            && !visited.contains(parent)) {
+                            stack.push(parent);
+                            expanded.push(false);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the changes of PATH in the order recorded, leaving out
+     *  those of commits no longer stored. */
+    static List<Change> changes(String path) {
+        ArrayList<Change> result = new ArrayList<>();
+        File index = file(Utils.historyDir(), path);
+        if (!index.exists()) {
+            return result;
+        }
+        String text =
+            new String(Utils.readContents(index), StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            String[] fields = line.split(" ");
+            if (fields.length == 3 && new File(Utils.commitObjectDir()
+                                               + fields[0]).exists()) {
+                result.add(new Change(fields[0], blob(fields[1]),
+                                      blob(fields[2])));
+            }
+        }
+        return result;
+    }
+
+    /** Return the changes that led PATH to the blob BLOBID in the commit
+     *  HEAD, latest first: the nearest change among HEAD and its
+     *  ancestors that made BLOBID, then the nearest among the ancestors
+     *  of its first parent that made the blob it started from, and so on
+     *  back to the change that added PATH, or as far as the index goes.
+     *  Only the changes of PATH are read from the index; the commits
+     *  between them are walked without reading their trees. Where the
+     *  same version was made by more than one ancestor, as cherry-pick
+     *  and rebase do, the one fewest parents away is taken. */
+    static List<Change> versions(String path, String blobID, String head) {
+        HashMap<String, Change> byCommit = new HashMap<>();
+        HashSet<String> made = new HashSet<>();
+        for (Change c : changes(path)) {
+            byCommit.put(c.commit(), c);
+            made.add(c.after());
+        }
+        IdMap<Commit> read = new IdMap<>();
+        ArrayList<Change> result = new ArrayList<>();
+        String from = head;
+        while (blobID != null && from != null && made.contains(blobID)) {
+            Change found = nearest(from, blobID, byCommit, read);
+            if (found == null) {
+                break;
+            }
+            result.add(found);
+            blobID = found.before();
+            from = CommitTree.commit(ObjectId.parse(found.commit()), read)
+                .parent1();
+        }
+        return result;
+    }
+
+    /** Return the change in BYCOMMIT, a map from commit IDs to the
+     *  changes they made, that made BLOBID and is fewest parents away
+     *  from the commit START, which it may be, or null if there is none.
+     *  The walk does not go past a change that made another blob, nor
+     *  into commits no longer stored. READ holds the commits read so far,
+     *  and gets those read by the walk. */
+    private static Change nearest(String start, String blobID,
+                                  Map<String, Change> byCommit,
+                                  IdMap<Commit> read) {
+        IdSet seen = new IdSet();
+        ArrayDeque<ObjectId> queue = new ArrayDeque<>();
+        queue.add(ObjectId.parse(start));
+        while (!queue.isEmpty()) {
+            ObjectId id = queue.poll();
+            if (!seen.add(id)
+                || !new File(Utils.commitObjectDir() + id).exists()) {
+                continue;
+            }
+            Change c = byCommit.get(id.toString());
+            if (c != null && blobID.equals(c.after())) {
+                return c;
+            } else if (c == null) {
+                for (String parent : CommitTree.commit(id, read).parents()) {
+                    queue.add(ObjectId.parse(parent));
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return, for each line of CONTENT, the version of PATH whose blob
+     *  is BLOBID in the commit HEAD, the ID of the commit that last
+     *  changed it. The lines are followed back through the versions of
+     *  PATH alone, matched from each version to the one before as merges
+     *  match them. Lines that cannot be followed further back than the
+     *  index goes are credited to the oldest change found, or to HEAD if
+     *  none is. */
+    static String[] credit(String path, String blobID, byte[] content,
+                           String head) {
+        List<Change> chain = versions(path, blobID, head);
+        ArrayList<String> child = ThreeWayMerge.lines(content);
+        String[] result = new String[child.size()];
+        int[] at = new int[child.size()];
+        for (int i = 0; i < at.length; i += 1) {
+            at[i] = i;
+        }
+        String owner = head;
+        for (int j = 0; j < chain.size(); j += 1) {
+            owner = chain.get(j).commit();
+            if (j + 1 == chain.size()) {
+                break;
+            }
+            ArrayList<String> parent = ThreeWayMerge.lines(
+                Utils.getBlob(chain.get(j).before()).blobInByte());
+            HashMap<String, Integer> numbers = new HashMap<>();
+            int[] toChild = LineDiff.match(
+                ThreeWayMerge.number(parent, numbers),
+                ThreeWayMerge.number(child, numbers));
+            int[] toParent = new int[child.size()];
+            Arrays.fill(toParent, -1);
+            for (int p = 0; p < toChild.length; p += 1) {
+                if (toChild[p] >= 0) {
+                    toParent[toChild[p]] = p;
+                }
+            }
+            for (int i = 0; i < at.length; i += 1) {
+                if (at[i] >= 0) {
+                    at[i] = toParent[at[i]];
+                    if (at[i] < 0) {
+                        result[i] = owner;
+                    }
+                }
+            }
+            child = parent;
+        }
+        for (int i = 0; i < at.length; i += 1) {
+            if (at[i] >= 0) {
+                result[i] = owner;
+            }
+        }
+        return result;
+    }
+
+    /** Return the file of the changes of PATH in the index in directory
+     *  DIR. */
+    private static File file(String dir, String path) {
+        return new File(dir + Utils.sha1(path));
+    }
+
+    /** Return the blob ID written as FIELD, or null for NONE. */
+    private static String blob(String field) {
+        return field.equals(NONE) ? null : field;
+    }
+
+    /** How a missing blob is written. */
+    private static final String NONE = "-";
+}
@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** Detection of renamed files between two snapshots. A path deleted and
+ *  a path added with the same blob are a rename. Otherwise, a deleted
+ *  and an added path are one if their contents are at least MIN_SCORE
+ *  percent similar: the Jaccard similarity of their sets of lines,
+ *  estimated from sketches of SKETCH_SIZE values each. The sketch of a
+ *  blob is the SKETCH_SIZE smallest hashes of its distinct lines; it is
+ *  computed once per blob and kept among the caches of the repository.
+ *
+ *  Pairs worth scoring are found through an index from each sketch
+ *  value to the added blobs whose sketches hold it, so that only blobs
+ *  sharing lines are ever compared; values held by more than
+ *  COMMON_LIMIT added blobs, such as those of blank lines, are left out
+ *  of the index. Pairs are then taken best first, each path in at most
+ *  one of them.
+ *  @author Zixian Zang
+ */
+class Renames {
+
+    /** Least similarity, as a percentage, of a rename. */
+    static final int MIN_SCORE = 50;
+
+    /** Number of values in a full sketch. */
+    static final int SKETCH_SIZE = 64;
+
+    /** Most added blobs a sketch value may be indexed for. */
+    static final int COMMON_LIMIT = 32;
+
+    /** Return the renames among CHANGES, a map from each changed path to
+     *  its pair of blob IDs {before, after} as made by Tree.diff, mapping
+     *  each deleted path to the added path it was renamed to. */
+    static Map<String, String> detect(Map<String, String[]> changes) {
+        ArrayList<String> deleted = new ArrayList<>();
+        ArrayList<String> added = new ArrayList<>();
+        for (Map.Entry<String, String[]> e : changes.entrySet()) {
+            if (e.getValue()[1] == null) {
+                deleted.add(e.getKey());
+            } else if (e.getValue()[0] == null) {
+                added.add(e.getKey());
+            }
+        }
+        HashMap<String, String> result = new HashMap<>();
+        if (deleted.isEmpty() || added.isEmpty()) {
+            return result;
+        }
+        HashMap<String, ArrayList<String>> byBlob = new HashMap<>();
+        for (String path : added) {
+            byBlob.computeIfAbsent(changes.get(path)[1],
+                                   k -> new ArrayList<>()).add(path);
+        }
+        HashSet<String> taken = new HashSet<>();
+        for (String path : deleted) {
+            ArrayList<String> same = byBlob.get(changes.get(path)[0]);
+            if (same != null && !same.isEmpty()) {
+                String to = same.remove(0);
+                result.put(path, to);
+                taken.add(to);
+            }
+        }
+        deleted.removeAll(result.keySet());
+        added.removeAll(taken);
+        if (!deleted.isEmpty() && !added.isEmpty()) {
+            matchSimilar(deleted, added, changes, result);
+        }
+        return result;
+    }
+
+    /** Add to RESULT the renames between the paths DELETED and ADDED, of
+     *  which CHANGES gives the blobs, found by similarity. */
+    private static void matchSimilar(List<String> deleted, List<String> added,
+                                     Map<String, String[]> changes,
+                                     Map<String, String> result) {
+        long[][] addedSketches = new long[added.size()][];
+        HashMap<Long, ArrayList<Integer>> index = new HashMap<>();
+        for (int j = 0; j < added.size(); j += 1) {
+            addedSketches[j] = sketch(changes.get(added.get(j))[1]);
+            for (long v : addedSketches[j]) {
+                index.computeIfAbsent(v, k -> new ArrayList<>()).add(j);
+            }
+        }
+        index.values().removeIf(holders -> holders.size() > COMMON_LIMIT);
+        ArrayList<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < deleted.size(); i += 1) {
+            long[] sketch = sketch(changes.get(deleted.get(i))[0]);
+            HashSet<Integer> candidates = new HashSet<>();
+            for (long v : sketch) {
+                ArrayList<Integer> holders = index.get(v);
+                if (holders != null) {
+                    candidates.addAll(holders);
+                }
+            }
+            for (int j : candidates) {
+                int score = similarity(sketch, addedSketches[j]);
+                if (score >= MIN_SCORE) {
+                    pairs.add(new int[] { score, i, j });
+                }
+            }
+        }
+        pairs.sort((x, y) -> x[0] != y[0] ? y[0] - x[0]
+                   : x[1] != y[1] ? x[1] - y[1] : x[2] - y[2]);
+        HashSet<Integer> usedAdded = new HashSet<>();
+        for (int[] pair : pairs) {
+            String from = deleted.get(pair[1]);
+            if (!result.containsKey(from) && usedAdded.add(pair[2])) {
+                result.put(from, added.get(pair[2]));
+            }
+        }
+    }
+
+    /** Return the estimated similarity, as a percentage, of the blobs
+     *  with sketches A and B: the share of the smallest SKETCH_SIZE
+     *  values of both that are in each. */
+    static int similarity(long[] a, long[] b) {
+        int i = 0, j = 0, seen = 0, shared = 0;
+        while (seen < SKETCH_SIZE && (i < a.length || j < b.length)) {
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                i += 1;
+            } else if (i == a.length || b[j] < a[i]) {
+                j += 1;
+            } else {
+                shared += 1;
+                i += 1;
+                j += 1;
+            }
+            seen += 1;
+        }
+        return seen == 0 ? 0 : 100 * shared / seen;
+    }
+
+    /** Return the sketch of the blob BLOBID, in increasing order, from
+     *  the cache if it was computed before. */
+    static long[] sketch(String blobID) {
+        File cached = new File(Utils.sketchDir() + blobID);
+        if (cached.exists()) {
+            ByteBuffer bytes = ByteBuffer.wrap(Utils.readContents(cached));
+            long[] result = new long[bytes.remaining() / Long.BYTES];
+            bytes.asLongBuffer().get(result);
+            return result;
+        }
+        long[] result;
+        try (InputStream in = new BufferedInputStream(
+                 Utils.getBlob(blobID).openStream())) {
+            result = sketch(in);
+        } catch (IOException excp) {
+            throw new GitletException(excp.getMessage());
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(result.length * Long.BYTES);
+        bytes.asLongBuffer().put(result);
+        cached.getParentFile().mkdirs();
+        Utils.writeContents(cached, (Object) bytes.array());
+        return result;
+    }
+
+    /** Return the sketch of the lines read from IN. */
+    static long[] sketch(InputStream in) throws IOException {
+        TreeSet<Long> smallest = new TreeSet<>();
+        long h = FNV_BASIS;
+        boolean empty = true;
+        for (int b = in.read(); b >= 0; b = in.read()) {
+            h = (h ^ b) * FNV_PRIME;
+            empty = false;
+            if (b == '\n') {
+                keep(smallest, mix(h));
+                h = FNV_BASIS;
+                empty = true;
+            }
+        }
+        if (!empty) {
+            keep(smallest, mix(h));
+        }
+        long[] result = new long[smallest.size()];
+        int k = 0;
+        for (long v : smallest) {
+            result[k++] = v;
+        }
+        return result;
+    }
+
+    /** Add V to SMALLEST, keeping only the SKETCH_SIZE smallest values. */
+    private static void keep(TreeSet<Long> smallest, long v) {
+        if (smallest.size() < SKETCH_SIZE || v < smallest.last()) {
+            smallest.add(v);
+            if (smallest.size() > SKETCH_SIZE) {
+                smallest.pollLast();
+            }
+        }
+    }
+
+    /** Return H with its bits mixed, so that the order of the results is
+     *  unrelated to the order of the lines hashed. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** Parameters of the FNV-1a hash of lines. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L,
+        FNV_PRIME = 0x100000001b3L;
+}
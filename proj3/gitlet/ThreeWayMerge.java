@@ -0,0 +1,179 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** A line-by-line merge of two versions of a file, OURS and THEIRS, that
+ *  were both changed from a common BASE, in the manner of diff3. Each of
+ *  them is matched with the base by LineDiff, and the three are cut into
+ *  stable chunks, whose lines are matched in all of them, and the chunks
+ *  between. A chunk between that only one side changed takes that side's
+ *  lines, as does one both sides changed alike; a chunk both changed
+ *  differently is a conflict, written between the usual markers with our
+ *  lines first. Lines keep their terminators, and bytes are kept as they
+ *  are, whatever the encoding of the file.
+ *  @author Zixian Zang
+ */
+class ThreeWayMerge {
+
+    /** Marker before our lines of a conflict. */
+    static final String OURS_MARKER = "<<<<<<< HEAD\n";
+
+    /** Marker between our lines and theirs. */
+    static final String SEPARATOR = "=======\n";
+
+    /** Marker after their lines. */
+    static final String THEIRS_MARKER = ">>>>>>>\n";
+
+    /** Bytes at the start of a file looked at for a NUL byte. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** Return true if CONTENT looks binary: if it has a NUL byte near
+     *  its start. Binary files have no lines to merge. */
+    static boolean isBinary(byte[] content) {
+        int n = Math.min(content.length, BINARY_PROBE);
+        for (int i = 0; i < n; i += 1) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** A merge of the changes from BASE to THEIRS into OURS. */
+    ThreeWayMerge(byte[] base, byte[] ours, byte[] theirs) {
+        _base = lines(base);
+        _ours = lines(ours);
+        _theirs = lines(theirs);
+        HashMap<String, Integer> numbers = new HashMap<>();
+        int[] baseNumbers = number(_base, numbers);
+        _toOurs = LineDiff.match(baseNumbers, number(_ours, numbers));
+        _toTheirs =
+            LineDiff.match(baseNumbers, number(_theirs, numbers));
+    }
+
+    /** Write the merged file to OUT, and return true if some chunk was
+     *  in conflict. */
+    boolean writeTo(OutputStream out) throws IOException {
+        boolean conflict = false;
+        int o = 0, a = 0, b = 0;
+        while (o < _base.size() || a < _ours.size() || b < _theirs.size()) {
+            int stable = 0;
+            while (o + stable < _base.size()
+                   && _toOurs[o + stable] == a + stable
+                   && _toTheirs[o + stable] == b + stable) {
+                stable += 1;
+            }
+            if (stable > 0) {
+                write(out, _base, o, o + stable);
+                o += stable;
+                a += stable;
+                b += stable;
+                continue;
+            }
+            int oEnd = o;
+            while (oEnd < _base.size()
+                   && (_toOurs[oEnd] < 0 || _toTheirs[oEnd] < 0)) {
+                oEnd += 1;
+            }
+            int aEnd = oEnd < _base.size() ? _toOurs[oEnd] : _ours.size();
+            int bEnd = oEnd < _base.size() ? _toTheirs[oEnd] : _theirs.size();
+            boolean oursSame = same(_base, o, oEnd, _ours, a, aEnd);
+            boolean theirsSame = same(_base, o, oEnd, _theirs, b, bEnd);
+            if (oursSame) {
+                write(out, _theirs, b, bEnd);
+            } else if (theirsSame || same(_ours, a, aEnd, _theirs, b, bEnd)) {
+                write(out, _ours, a, aEnd);
+            } else {
+                conflict = true;
+                out.write(OURS_MARKER.getBytes(StandardCharsets.UTF_8));
+                writeLines(out, _ours, a, aEnd);
+                out.write(SEPARATOR.getBytes(StandardCharsets.UTF_8));
+                writeLines(out, _theirs, b, bEnd);
+                out.write(THEIRS_MARKER.getBytes(StandardCharsets.UTF_8));
+            }
+            o = oEnd;
+            a = aEnd;
+            b = bEnd;
+        }
+        return conflict;
+    }
+
+    /** Return the lines of CONTENT, each with its terminator, as strings
+     *  of one character per byte. */
+    static ArrayList<String> lines(byte[] content) {
+        ArrayList<String> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < content.length; i += 1) {
+            if (content[i] == '\n') {
+                result.add(new String(content, start, i + 1 - start,
+                                      StandardCharsets.ISO_8859_1));
+                start = i + 1;
+            }
+        }
+        if (start < content.length) {
+            result.add(new String(content, start, content.length - start,
+                                  StandardCharsets.ISO_8859_1));
+        }
+        return result;
+    }
+
+    /** Return the numbers of LINES, giving each new line the next number
+     *  in NUMBERS. */
+    static int[] number(ArrayList<String> lines,
+                        HashMap<String, Integer> numbers) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            Integer n = numbers.get(lines.get(i));
+            if (n == null) {
+                n = numbers.size();
+                numbers.put(lines.get(i), n);
+            }
+            result[i] = n;
+        }
+        return result;
+    }
+
+    /** Return true if lines X[XLO .. XHI) equal lines Y[YLO .. YHI). */
+    private static boolean same(ArrayList<String> x, int xLo, int xHi,
+                                ArrayList<String> y, int yLo, int yHi) {
+        if (xHi - xLo != yHi - yLo) {
+            return false;
+        }
+        for (int i = 0; i < xHi - xLo; i += 1) {
+            if (!x.get(xLo + i).equals(y.get(yLo + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write lines LINES[LO .. HI) to OUT. */
+    private static void write(OutputStream out, ArrayList<String> lines,
+                              int lo, int hi) throws IOException {
+        for (int i = lo; i < hi; i += 1) {
+            out.write(lines.get(i).getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /** Write lines LINES[LO .. HI) to OUT as one side of a conflict,
+     *  ending the last of them with a newline if it has none, so that
+     *  the marker after it starts a line. */
+    private static void writeLines(OutputStream out, ArrayList<String> lines,
+                                   int lo, int hi) throws IOException {
+        write(out, lines, lo, hi);
+        if (hi > lo && !lines.get(hi - 1).endsWith("\n")) {
+            out.write('\n');
+        }
+    }
+
+    /** Lines of the three versions. */
+    private final ArrayList<String> _base, _ours, _theirs;
+
+    /** For each line of _base, the index of its match in _ours and in
+     *  _theirs, or -1. */
+    private final int[] _toOurs, _toTheirs;
+}
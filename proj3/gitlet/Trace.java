@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Timing and I/O accounting of one command, turned on by a leading
+ *  --trace or --trace=FILE argument or by the GITLET_TRACE environment
+ *  variable (1 or stderr for standard error, anything else for a file
+ *  name). The time spent in each Phase is measured exclusively: while a
+ *  phase runs inside another, such as the object reads of loading the
+ *  repository, only the inner one is charged. Objects and bytes read and
+ *  written are counted as well. When the program exits, a one-line JSON
+ *  summary is printed on standard error or written to the file.
+ *
+ *  When tracing is off, begin and end cost one test of a static field.
+ *  @author Zixian Zang
+ */
+class Trace {
+
+    /** Parts of a command that are timed separately. */
+    enum Phase {
+        /** Reading the repository object. */
+        LOAD,
+        /** Reading other objects and files. */
+        READ,
+        /** Listing the working directory. */
+        SCAN,
+        /** Writing objects and files. */
+        WRITE,
+        /** Writing the repository object. */
+        SAVE;
+
+        /** Return my name as used in summaries. */
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Name of the environment variable that turns tracing on. */
+    static final String ENV = "GITLET_TRACE";
+
+    /** Flag that turns tracing on. */
+    static final String FLAG = "--trace";
+
+    /** Counters kept, as indices into _counts. */
+    private static final int OBJECTS_READ = 0, OBJECTS_WRITTEN = 1,
+        BYTES_READ = 2, BYTES_WRITTEN = 3;
+
+    /** Names of the counters in summaries. */
+    private static final String[] COUNTER_KEYS = {
+        "objectsRead", "objectsWritten", "bytesRead", "bytesWritten"
+    };
+
+    /** True if tracing is on. */
+    private static boolean _on;
+
+    /** Command being traced. */
+    private static String _command;
+
+    /** Destination of the summary, or null for standard error. */
+    private static File _output;
+
+    /** Time tracing started. */
+    private static long _start;
+
+    /** Exclusive nanoseconds spent in each phase. */
+    private static final AtomicLongArray _nanos =
+        new AtomicLongArray(Phase.values().length);
+
+    /** Times each phase was entered. */
+    private static final AtomicLongArray _calls =
+        new AtomicLongArray(Phase.values().length);
+
+    /** Values of the counters. */
+    private static final AtomicLongArray _counts =
+        new AtomicLongArray(COUNTER_KEYS.length);
+
+    /** Per thread, the phases entered and not yet ended, innermost last,
+     *  and the time the innermost one was last resumed. */
+    private static final ThreadLocal<Frames> FRAMES =
+        ThreadLocal.withInitial(Frames::new);
+
+    /** Turn tracing on if ARGS starts with the trace flag or the
+     *  environment asks for it, and return ARGS without the flag. */
+    static String[] init(String[] args) {
+        String dest = System.getenv(ENV);
+        if (args.length > 0 && args[0].startsWith(FLAG)) {
+            String flag = args[0];
+            if (flag.equals(FLAG)) {
+                dest = "stderr";
+            } else if (flag.startsWith(FLAG + "=")) {
+                dest = flag.substring(FLAG.length() + 1);
+            } else {
+                return args;
+            }
+            String[] rest = new String[args.length - 1];
+            System.arraycopy(args, 1, rest, 0, rest.length);
+            args = rest;
+        }
+        if (dest == null || dest.isEmpty() || dest.equals("0")) {
+            return args;
+        }
+        if (!dest.equals("1") && !dest.equals("stderr")) {
+            _output = new File(dest).getAbsoluteFile();
+        }
+        _command = args.length > 0 ? args[0] : "";
+        _start = System.nanoTime();
+        if (!_on) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Trace::report));
+        }
+        _on = true;
+        return args;
+    }
+
+    /** Enter PHASE in the current thread. */
+    static void begin(Phase phase) {
+        if (!_on) {
+            return;
+        }
+        long now = System.nanoTime();
+        Frames frames = FRAMES.get();
+        if (frames.depth > 0) {
+            _nanos.addAndGet(frames.stack[frames.depth - 1].ordinal(),
+                             now - frames.mark);
+        }
+        frames.push(phase);
+        frames.mark = now;
+        _calls.incrementAndGet(phase.ordinal());
+    }
+
+    /** Leave the innermost phase of the current thread. */
+    static void end() {
+        if (!_on) {
+            return;
+        }
+        long now = System.nanoTime();
+        Frames frames = FRAMES.get();
+        if (frames.depth == 0) {
+            return;
+        }
+        frames.depth -= 1;
+        _nanos.addAndGet(frames.stack[frames.depth].ordinal(),
+                         now - frames.mark);
+        frames.mark = now;
+    }
+
+    /** Count the reading of an object. */
+    static void objectRead() {
+        if (_on) {
+            _counts.incrementAndGet(OBJECTS_READ);
+        }
+    }
+
+    /** Count the writing of an object. */
+    static void objectWritten() {
+        if (_on) {
+            _counts.incrementAndGet(OBJECTS_WRITTEN);
+        }
+    }
+
+    /** Count SIZE bytes read. */
+    static void bytesRead(long size) {
+        if (_on) {
+            _counts.addAndGet(BYTES_READ, size);
+        }
+    }
+
+    /** Count SIZE bytes written. */
+    static void bytesWritten(long size) {
+        if (_on) {
+            _counts.addAndGet(BYTES_WRITTEN, size);
+        }
+    }
+
+    /** Return the summary of what has been traced so far, as JSON. */
+    static String summary() {
+        long wall = System.nanoTime() - _start;
+        StringBuilder json = new StringBuilder("{\"command\":\"");
+        json.append(_command.replace("\\", "\\\\").replace("\"", "\\\""));
+        json.append("\",\"wallNanos\":").append(wall);
+        json.append(",\"phases\":{");
+        long traced = 0;
+        for (Phase phase : Phase.values()) {
+            long nanos = _nanos.get(phase.ordinal());
+            traced += nanos;
+            json.append('"').append(phase.key()).append("\":{\"nanos\":");
+            json.append(nanos).append(",\"calls\":");
+            json.append(_calls.get(phase.ordinal())).append("},");
+        }
+        json.append("\"other\":{\"nanos\":");
+        json.append(Math.max(0, wall - traced));
+        json.append("}}");
+        for (int i = 0; i < COUNTER_KEYS.length; i += 1) {
+            json.append(",\"").append(COUNTER_KEYS[i]).append("\":");
+            json.append(_counts.get(i));
+        }
+        return json.append("}").toString();
+    }
+
+    /** Print or write the summary. */
+    private static void report() {
+        String summary = summary();
+        _on = false;
+        if (_output == null) {
+            System.err.println(summary);
+        } else {
+            Utils.writeContents(_output, summary, "\n");
+        }
+    }
+
+    /** The open phases of one thread. */
+    private static class Frames {
+        /** Open phases, innermost last. */
+        private Phase[] stack = new Phase[8];
+        /** Number of open phases. */
+        private int depth;
+        /** Time the innermost phase was entered or last resumed. */
+        private long mark;
+
+        /** Open PHASE. */
+        void push(Phase phase) {
+            if (depth == stack.length) {
+                Phase[] bigger = new Phase[2 * depth];
+                System.arraycopy(stack, 0, bigger, 0, depth);
+                stack = bigger;
+            }
+            stack[depth] = phase;
+            depth += 1;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/** One directory of a commit's snapshot. A tree maps the names of the
+ *  files directly inside its directory to blob IDs and the names of its
+ *  subdirectories to the IDs of their own trees. Its ID is the hash of
+ *  those sorted entries, so a directory whose contents did not change
+ *  keeps its ID and is shared by every commit that contains it.
+ *  @author Zixian Zang
+ */
+class Tree implements Serializable {
+
+    /** Kept equal to the serial form of trees stored before Codec, so
+     *  that they can still be read and converted. */
+    private static final long serialVersionUID = -8513865525139181392L;
+
+    /** Separator of path components in manifests. */
+    static final String SEP = "/";
+
+    /** Map from the name of each file in this directory to its blob ID. */
+    private TreeMap<String, String> _files;
+
+    /** Map from the name of each subdirectory to its tree ID. */
+    private TreeMap<String, String> _dirs;
+
+    /** ID of this tree. */
+    private String _shaID;
+
+    /** An empty tree. */
+    Tree() {
+        _files = new TreeMap<>();
+        _dirs = new TreeMap<>();
+    }
+
+    /** A copy of OTHER, to be modified. */
+    private Tree(Tree other) {
+        _files = new TreeMap<>(other._files);
+        _dirs = new TreeMap<>(other._dirs);
+    }
+
+    /** Read a tree from IN, as written by encode. */
+    Tree(Codec.Reader in) throws IOException {
+        _shaID = in.readId();
+        _files = in.readIdMap(new TreeMap<>());
+        _dirs = in.readIdMap(new TreeMap<>());
+    }
+
+    /** Write my fields to OUT. */
+    void encode(Codec.Writer out) throws IOException {
+        out.writeId(_shaID);
+        out.writeIdMap(_files);
+        out.writeIdMap(_dirs);
+    }
+
+    /** Return the ID of this tree. */
+    String treeID() {
+        return _shaID;
+    }
+
+    /** Return the sorted map from file names to blob IDs of this tree. */
+    TreeMap<String, String> files() {
+        return _files;
+    }
+
+    /** Return the sorted map from subdirectory names to tree IDs. */
+    TreeMap<String, String> dirs() {
+        return _dirs;
+    }
+
+    /** Return true if this directory holds nothing. */
+    boolean isEmpty() {
+        return _files.isEmpty() && _dirs.isEmpty();
+    }
+
+    /** Compute my ID from my entries. */
+    private void computeID() {
+        _shaID = contentID();
+    }
+
+    /** Return the ID my entries hash to, which is my ID unless I was
+     *  damaged. */
+    String contentID() {
+        StringBuilder presha1 = new StringBuilder("tree");
+        for (Map.Entry<String, String> e : _files.entrySet()) {
+            presha1.append("f ").append(e.getKey()).append('\0');
+            presha1.append(e.getValue());
+        }
+        for (Map.Entry<String, String> e : _dirs.entrySet()) {
+            presha1.append("d ").append(e.getKey()).append('\0');
+            presha1.append(e.getValue());
+        }
+        return Utils.hash(presha1.toString());
+    }
+
+    /** Serialize this tree, unless an equal tree is already stored,
+     *  after the subtrees of mine that were only built in memory. */
+    void serialize() {
+        File location = new File(Utils.treeObjectDir() + _shaID);
+        if (location.exists()) {
+            return;
+        }
+        for (String sub : _dirs.values()) {
+            store(sub);
+        }
+        location.getParentFile().mkdirs();
+        Utils.writeObject(location, this);
+    }
+
+    /** Store the tree TREEID and its subtrees if they were only built in
+     *  memory, by buildUnstored. Stored trees are left alone. */
+    static void store(String treeID) {
+        Tree t = Utils.unstoredTree(treeID);
+        if (t != null) {
+            t.serialize();
+        }
+    }
+
+    /** Return the ID of the tree obtained by applying CHANGES to the tree
+     *  TREEID, which is null for an empty directory. CHANGES maps paths
+     *  relative to that directory to their new blob IDs, or to null for
+     *  removed paths. Only the directories on the way to a changed path
+     *  are read and written; every other subtree keeps its ID. */
+    static String apply(String treeID, Map<String, String> changes) {
+        return applyTree(treeID, changes, true).treeID();
+    }
+
+    /** Return the tree obtained by applying CHANGES to TREEID, as for
+     *  apply, after storing it if STORE, or else keeping it in memory
+     *  with the subtrees built for it. */
+    private static Tree applyTree(String treeID, Map<String, String> changes,
+                                  boolean store) {
+        Tree result;
+        if (treeID == null) {
+            result = new Tree();
+        } else {
+            result = new Tree(Utils.getTree(treeID));
+        }
+        HashMap<String, HashMap<String, String>> below = new HashMap<>();
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf(SEP);
+            if (slash < 0) {
+                if (e.getValue() == null) {
+                    result._files.remove(path);
+                } else {
+                    result._files.put(path, e.getValue());
+                }
+            } else {
+                below.computeIfAbsent(path.substring(0, slash),
+                    k -> new HashMap<>()).put(path.substring(slash + 1),
+                                              e.getValue());
+            }
+        }
+        for (Map.Entry<String, HashMap<String, String>> e : below.entrySet()) {
+            String dir = e.getKey();
+            Tree sub = applyTree(result._dirs.get(dir), e.getValue(), store);
+            if (sub.isEmpty()) {
+                result._dirs.remove(dir);
+            } else {
+                result._dirs.put(dir, sub.treeID());
+            }
+        }
+        result.computeID();
+        if (store) {
+            result.serialize();
+        } else {
+            Utils.keepTree(result);
+        }
+        return result;
+    }
+
+    /** Return the ID of a stored tree holding FILES, a map from paths
+     *  to blob IDs. */
+    static String build(Map<String, String> files) {
+        return apply(null, files);
+    }
+
+    /** Return the ID of a tree holding FILES, as for build, that is kept
+     *  in memory rather than stored, so that reading an old repository
+     *  does not write to it. It is stored once a stored tree or a new
+     *  commit refers to it, or by store. */
+    static String buildUnstored(Map<String, String> files) {
+        return applyTree(null, files, false).treeID();
+    }
+
+    /** Add every file below tree TREEID to INTO, mapping its path,
+     *  prefixed with PREFIX, to its blob ID. */
+    static void flatten(String treeID, String prefix,
+                        Map<String, String> into) {
+        Tree t = Utils.getTree(treeID);
+        for (Map.Entry<String, String> e : t._files.entrySet()) {
+            into.put(prefix + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, String> e : t._dirs.entrySet()) {
+            flatten(e.getValue(), prefix + e.getKey() + SEP, into);
+        }
+    }
+
+    /** Return the blob ID of PATH below tree TREEID, or null if there is
+     *  no such file. Reads one tree per directory on the path. */
+    static String lookup(String treeID, String path) {
+        String[] parts = path.split(SEP);
+        Tree t = Utils.getTree(treeID);
+        for (int i = 0; i < parts.length - 1; i += 1) {
+            String sub = t._dirs.get(parts[i]);
+            if (sub == null) {
+                return null;
+            }
+            t = Utils.getTree(sub);
+        }
+        return t._files.get(parts[parts.length - 1]);
+    }
+
+    /** Add to INTO every path, prefixed with PREFIX, whose blob differs
+     *  between trees FROM and TO (either may be null for an empty
+     *  directory), mapped to its pair of blob IDs {in FROM, in TO}, with
+     *  null for a missing side. The sorted entries of each pair of
+     *  directories are joined in one pass over both, and subtrees with
+     *  equal IDs are skipped without being read. */
+    static void diff(String from, String to, String prefix,
+                     Map<String, String[]> into) {
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        Tree a = from == null ? new Tree() : Utils.getTree(from);
+        Tree b = to == null ? new Tree() : Utils.getTree(to);
+        joinChanges(a._files, b._files, (name, x, y) ->
+            into.put(prefix + name, new String[] {x, y}));
+        joinChanges(a._dirs, b._dirs, (name, x, y) ->
+            diff(x, y, prefix + name + SEP, into));
+    }
+
+    /** Return the paths whose blobs differ between the trees FROM and
+     *  TO, either of which may be null, sorted by path and mapped to
+     *  their pairs of blob IDs as for diff. */
+    static TreeMap<String, String[]> diff(String from, String to) {
+        TreeMap<String, String[]> result = new TreeMap<>();
+        diff(from, to, "", result);
+        return result;
+    }
+
+    /** What to do with an entry of two joined directories. */
+    private interface Change {
+        /** Handle the entry NAME, whose ID is X in the first directory
+         *  and Y in the second, with null where it is missing. */
+        void apply(String name, String x, String y);
+    }
+
+    /** Call CHANGE with every name whose IDs differ between the sorted
+     *  maps A and B, in order, walking each of them once. */
+    private static void joinChanges(TreeMap<String, String> a,
+                                    TreeMap<String, String> b,
+                                    Change change) {
+        Iterator<Map.Entry<String, String>> i = a.entrySet().iterator();
+        Iterator<Map.Entry<String, String>> j = b.entrySet().iterator();
+        Map.Entry<String, String> x = i.hasNext() ? i.next() : null;
+        Map.Entry<String, String> y = j.hasNext() ? j.next() : null;
+        while (x != null || y != null) {
+            int c = x == null ? 1
+                : y == null ? -1 : x.getKey().compareTo(y.getKey());
+            if (c < 0) {
+                change.apply(x.getKey(), x.getValue(), null);
+            } else if (c > 0) {
+                change.apply(y.getKey(), null, y.getValue());
+            } else if (!x.getValue().equals(y.getValue())) {
+                change.apply(x.getKey(), x.getValue(), y.getValue());
+            }
+            if (c <= 0) {
+                x = i.hasNext() ? i.next() : null;
+            }
+            if (c >= 0) {
+                y = j.hasNext() ? j.next() : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** The differences between two versions of a file, as the hunks of a
+ *  unified diff: each run of changed lines with up to CONTEXT unchanged
+ *  lines around it, runs closer than that sharing a hunk. The lines are
+ *  matched by LineDiff, as merges match them.
+ *  @author Zixian Zang
+ */
+class UnifiedDiff {
+
+    /** Unchanged lines shown around each change. */
+    static final int CONTEXT = 3;
+
+    /** A diff of the contents A and B, either of which may be null for a
+     *  missing file. */
+    UnifiedDiff(byte[] a, byte[] b) {
+        _binary = a != null && ThreeWayMerge.isBinary(a)
+            || b != null && ThreeWayMerge.isBinary(b);
+        _a = a == null ? new ArrayList<>() : ThreeWayMerge.lines(a);
+        _b = b == null ? new ArrayList<>() : ThreeWayMerge.lines(b);
+        if (_binary) {
+            return;
+        }
+        HashMap<String, Integer> numbers = new HashMap<>();
+        int[] match = LineDiff.match(ThreeWayMerge.number(_a, numbers),
+                                     ThreeWayMerge.number(_b, numbers));
+        int n = _a.size() + _b.size();
+        _kinds = new char[n];
+        _aAt = new int[n];
+        _bAt = new int[n];
+        int i = 0, j = 0;
+        while (i < _a.size() || j < _b.size()) {
+            _aAt[_ops] = i;
+            _bAt[_ops] = j;
+            if (i < _a.size() && match[i] == j) {
+                _kinds[_ops] = ' ';
+                i += 1;
+                j += 1;
+            } else if (i < _a.size() && match[i] < 0) {
+                _kinds[_ops] = '-';
+                i += 1;
+            } else {
+                _kinds[_ops] = '+';
+                j += 1;
+            }
+            _ops += 1;
+        }
+    }
+
+    /** Write the diff to OUT, under a header naming the old version FROM
+     *  and the new one TO. */
+    void writeTo(OutputStream out, String from, String to)
+        throws IOException {
+        if (_binary) {
+            write(out, "Binary files " + from + " and " + to + " differ\n");
+            return;
+        }
+        write(out, "--- " + from + "\n+++ " + to + "\n");
+        int k = 0;
+        while (k < _ops) {
+            if (_kinds[k] == ' ') {
+                k += 1;
+                continue;
+            }
+            int last = k;
+            for (int t = k; t < _ops && t - last <= 2 * CONTEXT; t += 1) {
+                if (_kinds[t] != ' ') {
+                    last = t;
+                }
+            }
+            int start = Math.max(0, k - CONTEXT);
+            int end = Math.min(_ops, last + 1 + CONTEXT);
+            writeHunk(out, start, end);
+            k = end;
+        }
+    }
+
+    /** Write the hunk of the edits from index START up to END to OUT. */
+    private void writeHunk(OutputStream out, int start, int end)
+        throws IOException {
+        int aCount = 0, bCount = 0;
+        for (int t = start; t < end; t += 1) {
+            aCount += _kinds[t] == '+' ? 0 : 1;
+            bCount += _kinds[t] == '-' ? 0 : 1;
+        }
+        write(out, "@@ -" + range(_aAt[start], aCount) + " +"
+              + range(_bAt[start], bCount) + " @@\n");
+        for (int t = start; t < end; t += 1) {
+            String line = _kinds[t] == '+' ? _b.get(_bAt[t])
+                : _a.get(_aAt[t]);
+            out.write(_kinds[t]);
+            out.write(line.getBytes(StandardCharsets.ISO_8859_1));
+            if (!line.endsWith("\n")) {
+                write(out, "\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    /** Return the range of the COUNT lines after the first AT lines, as
+     *  a hunk header gives it. */
+    private static String range(int at, int count) {
+        if (count == 1) {
+            return Integer.toString(at + 1);
+        }
+        return (count == 0 ? at : at + 1) + "," + count;
+    }
+
+    /** Write TEXT to OUT. */
+    private static void write(OutputStream out, String text)
+        throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** True if either version is binary. */
+    private final boolean _binary;
+
+    /** Lines of the two versions. */
+    private final ArrayList<String> _a, _b;
+
+    /** Kind of each edit turning _a into _b: ' ' to keep a line, '-' to
+     *  delete one and '+' to insert one. */
+    private char[] _kinds;
+
+    /** Index of the line of _a and of _b at each edit. */
+    private int[] _aAt, _bAt;
+
+    /** Number of edits. */
+    private int _ops;
+}
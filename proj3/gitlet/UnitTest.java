@@ -3,8 +3,23 @@ package gitlet;
 import ucb.junit.textui;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.HashSet;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.Assert.*;
 
@@ -24,24 +39,579 @@ public class UnitTest {
     public void commitTest() {
         File g = new File(".gitlet");
         File f = new File(".gitlet/commits/");
+        File t = new File(".gitlet/trees/");
         f.mkdirs();
-        Commit c = new Commit("a", "b", "c", new HashSet<>(), "0");
+        Commit c = new Commit("a", "b", "c", new HashMap<>(), "0");
         assertEquals("b", c.parent1());
         assertEquals("c", c.parent2());
         assertTrue(c.hasParent());
+        Commit octopus = new Commit("m", Arrays.asList("b", "c", "d", "e"),
+                                    c.tree(), "0");
+        assertEquals(Arrays.asList("b", "c", "d", "e"), octopus.parents());
+        assertEquals(Arrays.asList("d", "e"), octopus.moreParents());
+        Commit decoded =
+            Codec.decode(Utils.serialize(octopus), Commit.class);
+        assertEquals(octopus.parents(), decoded.parents());
+        assertEquals(octopus.commitID(), decoded.computeID());
+        assertNotEquals(c.computeID(), octopus.computeID());
+        assertTrue(c.moreParents().isEmpty());
         for (File f1 : f.listFiles()) {
             f1.delete();
         }
+        for (File t1 : t.listFiles()) {
+            t1.delete();
+        }
         f.delete();
+        t.delete();
         g.delete();
     }
 
+    @Test
+    public void blobContentAddressTest() {
+        Blob a = new Blob("same content".getBytes());
+        Blob b = new Blob("same content".getBytes());
+        Blob c = new Blob("other content".getBytes());
+        assertEquals(a.blobShaID(), b.blobShaID());
+        assertNotEquals(a.blobShaID(), c.blobShaID());
+    }
+
+    @Test
+    public void treeReuseTest() {
+        File trees = new File(Utils.treeObjectDir());
+        HashMap<String, String> files = new HashMap<>();
+        files.put("a/x.txt", "1");
+        files.put("b/y.txt", "2");
+        String first = Tree.build(files);
+        HashMap<String, String> changes = new HashMap<>();
+        changes.put("b/y.txt", "3");
+        String second = Tree.apply(first, changes);
+        assertNotEquals(first, second);
+        assertEquals(Utils.getTree(first).dirs().get("a"),
+                     Utils.getTree(second).dirs().get("a"));
+        HashMap<String, String[]> diff = new HashMap<>();
+        Tree.diff(first, second, "", diff);
+        assertEquals(1, diff.size());
+        assertEquals("3", Tree.lookup(second, "b/y.txt"));
+        changes.put("a/x.txt", null);
+        changes.put("a.txt", "4");
+        String third = Tree.apply(second, changes);
+        assertEquals(Arrays.asList("a.txt", "a/x.txt", "b/y.txt"),
+                     new ArrayList<>(Tree.diff(first, third).keySet()));
+        assertEquals(Arrays.asList("1", null),
+                     Arrays.asList(Tree.diff(first, third).get("a/x.txt")));
+        assertTrue(Tree.diff(third, third).isEmpty());
+        for (File t : trees.listFiles()) {
+            t.delete();
+        }
+        trees.delete();
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void unifiedDiffTest() throws IOException {
+        StringBuilder a = new StringBuilder(), b = new StringBuilder();
+        for (int i = 1; i <= 20; i += 1) {
+            a.append(i).append("\n");
+            b.append(i == 2 ? "two" : i == 18 ? "" : i + "\n");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new UnifiedDiff(a.toString().getBytes(), b.toString().getBytes())
+            .writeTo(out, "x", "y");
+        assertEquals("--- x\n+++ y\n@@ -1,6 +1,5 @@\n 1\n-2\n-3\n+two3\n"
+                     + " 4\n 5\n 6\n@@ -15,6 +14,5 @@\n 15\n 16\n 17\n"
+                     + "-18\n 19\n 20\n", out.toString());
+    }
+
+    @Test
+    public void changedPathsTest() {
+        ArrayList<String> paths = new ArrayList<>();
+        for (int i = 0; i < ChangedPaths.MAX_PATHS; i += 1) {
+            paths.add("dir" + (i % 7) + "/file" + i + ".txt");
+        }
+        byte[] filter = ChangedPaths.of(paths);
+        for (String path : paths) {
+            assertTrue(ChangedPaths.mightContain(filter, path));
+        }
+        int claimed = 0;
+        for (int i = 0; i < 10000; i += 1) {
+            if (ChangedPaths.mightContain(filter, "other/file" + i)) {
+                claimed += 1;
+            }
+        }
+        assertTrue(claimed < 300);
+        assertFalse(ChangedPaths.mightContain(
+            ChangedPaths.of(new ArrayList<>()), "a.txt"));
+        paths.add("one/more.txt");
+        assertTrue(ChangedPaths.mightContain(ChangedPaths.of(paths),
+                                             "not/there.txt"));
+    }
+
+    @Test
+    public void ignoreRulesTest() {
+        IgnoreRules rules = new IgnoreRules(Arrays.asList(
+            "# build output", "build/", "*.log", "tmp*", "/docs/*.pdf",
+            "cache?.bin"));
+        assertTrue(rules.ignored("a/b/run.log", "run.log"));
+        assertTrue(rules.ignored("tmpfile", "tmpfile"));
+        assertTrue(rules.ignored("docs/x.pdf", "x.pdf"));
+        assertFalse(rules.ignored("docs/sub/x.pdf", "x.pdf"));
+        assertTrue(rules.ignored("cache1.bin", "cache1.bin"));
+        assertFalse(rules.ignored("build", "build"));
+        assertTrue(rules.ignoredDirectory("src/build", "build"));
+        assertTrue(rules.ignoredPath("build/out/Main.class"));
+        assertFalse(rules.ignoredPath("src/Main.java"));
+    }
+
+    @Test
+    public void chunkerTest() throws IOException {
+        byte[] data = new byte[2 * 1024 * 1024];
+        new Random(61).nextBytes(data);
+        List<byte[]> before = chunks(data);
+        data[data.length / 2] += 1;
+        List<byte[]> after = chunks(data);
+        int total = 0, same = 0;
+        for (byte[] c : before) {
+            total += c.length;
+            assertTrue(c.length <= Chunker.MAX_SIZE);
+            for (byte[] d : after) {
+                if (Arrays.equals(c, d)) {
+                    same += 1;
+                    break;
+                }
+            }
+        }
+        assertEquals(data.length, total);
+        assertTrue(same >= before.size() - 2);
+    }
+
+    /** Return the chunks DATA is cut into. */
+    private static List<byte[]> chunks(byte[] data) throws IOException {
+        Chunker chunker = new Chunker(new ByteArrayInputStream(data));
+        ArrayList<byte[]> result = new ArrayList<>();
+        for (byte[] c = chunker.next(); c != null; c = chunker.next()) {
+            result.add(c);
+        }
+        return result;
+    }
+
+    @Test
+    public void streamedBlobTest() throws IOException {
+        byte[] data = new byte[(int) Blob.CHUNKING_THRESHOLD + 4096];
+        new Random(42).nextBytes(data);
+        File file = new File("streamed.bin");
+        for (int n : new int[] { 100, data.length }) {
+            byte[] content = Arrays.copyOf(data, n);
+            Blob blob = new Blob(new ByteArrayInputStream(content),
+                                 file.getPath());
+            assertArrayEquals(content, Utils.readContents(file));
+            assertEquals(Blob.contentID(content), blob.blobShaID());
+            assertEquals(new Blob(content).chunkIDs(), blob.chunkIDs());
+            assertEquals(n, blob.size());
+        }
+        assertFalse(new Blob(new ByteArrayInputStream(data),
+                             file.getPath()).chunkIDs().isEmpty());
+        file.delete();
+        File chunks = new File(Utils.chunkObjectDir());
+        for (File c : chunks.listFiles()) {
+            c.delete();
+        }
+        chunks.delete();
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void codecTest() throws IOException {
+        Blob blob = new Blob("encoded content".getBytes());
+        byte[] encoded = Utils.serialize(blob);
+        assertFalse(Codec.isLegacy(encoded));
+        Blob decoded = Codec.decode(encoded, Blob.class);
+        assertEquals(blob.blobShaID(), decoded.blobShaID());
+        assertEquals("encoded content", decoded.blobInString());
+        assertEquals(blob.size(), decoded.size());
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(legacy);
+        out.writeObject(blob);
+        out.close();
+        assertTrue(Codec.isLegacy(legacy.toByteArray()));
+        assertTrue(encoded.length < legacy.size());
+        decoded = Codec.decode(legacy.toByteArray(), Blob.class);
+        assertEquals(blob.blobShaID(), decoded.blobShaID());
+        File trees = new File(Utils.treeObjectDir());
+        HashMap<String, String> files = new HashMap<>();
+        files.put("a/x.txt", Utils.sha1("x"));
+        files.put("y.txt", "not a full ID");
+        String id = Tree.build(files);
+        Tree tree = Codec.decode(Utils.serialize(Utils.getTree(id)),
+                                 Tree.class);
+        assertEquals(id, tree.treeID());
+        assertEquals("not a full ID", tree.files().get("y.txt"));
+        assertEquals(Utils.sha1("x"), Tree.lookup(id, "a/x.txt"));
+        for (File t : trees.listFiles()) {
+            t.delete();
+        }
+        trees.delete();
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void objectIdTest() {
+        String hex = Utils.sha1("some object");
+        ObjectId id = ObjectId.parse(hex);
+        assertEquals(hex, id.toString());
+        assertEquals(id, ObjectId.fromBytes(id.toBytes()));
+        IdMap<String> map = new IdMap<>();
+        ArrayList<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 1) {
+            ObjectId k = ObjectId.parse(Utils.sha1("object " + i));
+            ids.add(k);
+            assertNull(map.put(k, Integer.toString(i)));
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < ids.size(); i += 1) {
+            assertEquals(Integer.toString(i), map.get(ids.get(i)));
+        }
+        assertNull(map.get(id));
+        for (int i = 0; i < ids.size(); i += 2) {
+            assertEquals(Integer.toString(i), map.remove(ids.get(i)));
+        }
+        assertNull(map.remove(ids.get(0)));
+        assertEquals(500, map.size());
+        for (int i = 0; i < ids.size(); i += 1) {
+            assertEquals(i % 2 == 0 ? null : Integer.toString(i),
+                         map.get(ids.get(i)));
+        }
+        IdSet set = new IdSet();
+        assertTrue(set.add(id));
+        assertFalse(set.add(ObjectId.parse(hex)));
+        assertTrue(set.contains(id));
+        assertFalse(set.contains(ids.get(0)));
+        assertTrue(set.remove(id));
+        assertFalse(set.contains(id));
+    }
+
+    @Test
+    public void repoIndexTest() throws IOException {
+        File[] dirs = { new File(Utils.commitObjectDir()),
+                        new File(Utils.treeObjectDir()) };
+        for (File dir : dirs) {
+            dir.mkdirs();
+        }
+        CommitTree repo = new CommitTree();
+        String head = repo.curHeadCommit();
+        assertEquals(head, repo.findFullID(head.substring(0, 6)));
+        assertEquals(head, repo.commitNamed("master"));
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(legacy);
+        out.writeObject(repo);
+        out.close();
+        for (byte[] bytes : Arrays.asList(legacy.toByteArray(),
+                                          Utils.serialize(repo))) {
+            CommitTree read = Codec.decode(bytes, CommitTree.class);
+            assertEquals(head, read.curHeadCommit());
+            assertEquals(head, read.findFullID(head.substring(0, 8)));
+            assertTrue(read.allCommits().contains(ObjectId.parse(head)));
+            assertEquals(1, read.allCommits().size());
+        }
+        for (File dir : dirs) {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void hashingTest() throws IOException,
+                                     NoSuchAlgorithmException {
+        byte[] data = new byte[300000];
+        new Random(61).nextBytes(data);
+        String whole = Utils.sha1(data);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : ObjectId.parse(whole).toBytes()) {
+            hex.append(String.format("%02x", b));
+        }
+        assertEquals(hex.toString(), whole);
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        assertEquals(data.length,
+                     Utils.update(md, new ByteArrayInputStream(data)));
+        assertEquals(whole, Utils.toHex(md.digest()));
+        assertEquals(whole, Utils.sha1(data));
+        md = MessageDigest.getInstance("SHA-256");
+        md.update(data);
+        String wide = Utils.toHex(md.digest());
+        assertEquals(64, wide.length());
+        ObjectId id = ObjectId.parse(wide);
+        assertTrue(id.wide());
+        assertEquals(wide, id.toString());
+        assertEquals(id, ObjectId.fromBytes(id.toBytes()));
+        IdSet set = new IdSet();
+        for (int i = 0; i < 100; i += 1) {
+            md.update((byte) i);
+            set.add(ObjectId.fromBytes(md.digest()));
+        }
+        assertTrue(set.add(id));
+        assertTrue(set.contains(ObjectId.parse(wide)));
+        assertFalse(set.contains(ObjectId.parse(whole)));
+    }
+
+    @Test
+    public void lineDiffTest() throws IOException {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 200; trial += 1) {
+            int[] a = randomLines(random, random.nextInt(40));
+            int[] b = randomLines(random, random.nextInt(40));
+            int[] match = LineDiff.match(a, b);
+            int matched = 0, last = -1;
+            for (int i = 0; i < a.length; i += 1) {
+                if (match[i] >= 0) {
+                    assertEquals(a[i], b[match[i]]);
+                    assertTrue(match[i] > last);
+                    last = match[i];
+                    matched += 1;
+                }
+            }
+            int[][] lcs = new int[a.length + 1][b.length + 1];
+            for (int i = a.length - 1; i >= 0; i -= 1) {
+                for (int j = b.length - 1; j >= 0; j -= 1) {
+                    lcs[i][j] = a[i] == b[j] ? lcs[i + 1][j + 1] + 1
+                        : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+                }
+            }
+            assertEquals(lcs[0][0], matched);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(new ThreeWayMerge("a\nb\nc\n".getBytes(),
+                                      "A\nb\nc\n".getBytes(),
+                                      "a\nb\nC".getBytes()).writeTo(out));
+        assertEquals("A\nb\nC", out.toString());
+    }
+
+    /** Return N random lines out of a few, as numbers, from RANDOM. */
+    private static int[] randomLines(Random random, int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = random.nextInt(4);
+        }
+        return result;
+    }
+
+    @Test
+    public void flightEventTest() throws IOException {
+        File commits = new File(Utils.commitObjectDir());
+        File trees = new File(Utils.treeObjectDir());
+        commits.mkdirs();
+        File dump = File.createTempFile("gitlet", ".jfr");
+        String id;
+        try (Recording recording = new Recording()) {
+            recording.enable("gitlet.ObjectRead").withoutThreshold();
+            recording.start();
+            id = new Commit("a", null, null, new HashMap<>(), "0").commitID();
+            Utils.getCommit(id);
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+        boolean found = false;
+        for (RecordedEvent e : RecordingFile.readAllEvents(dump.toPath())) {
+            if (e.getEventType().getName().equals("gitlet.ObjectRead")
+                && id.equals(e.getString("id"))) {
+                assertEquals("commit", e.getString("kind"));
+                assertTrue(e.getLong("size") > 0);
+                found = true;
+            }
+        }
+        assertTrue(found);
+        dump.delete();
+        for (File f : commits.listFiles()) {
+            f.delete();
+        }
+        for (File t : trees.listFiles()) {
+            t.delete();
+        }
+        commits.delete();
+        trees.delete();
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void pathHistoryTest() {
+        File[] dirs = { new File(Utils.commitObjectDir()),
+                        new File(Utils.treeObjectDir()),
+                        new File(Utils.blobObjectDir()),
+                        new File(Utils.historyDir()) };
+        dirs[0].mkdirs();
+        dirs[2].mkdirs();
+        Blob before = new Blob("1\n2\n3\n".getBytes());
+        Blob after = new Blob("1\nX\n3\n".getBytes());
+        before.serializeBlob();
+        after.serializeBlob();
+        HashMap<String, String> files = new HashMap<>();
+        files.put("f.txt", before.blobShaID());
+        String c1 = new Commit("a", null, null, files, "0").commitID();
+        files.put("f.txt", after.blobShaID());
+        String c2 = new Commit("b", c1, null, files, "1").commitID();
+        String c3 = new Commit("c", c1, null, files, "2").commitID();
+        IdSet known = new IdSet();
+        known.add(ObjectId.parse(c1));
+        known.add(ObjectId.parse(c2));
+        PathHistory.record(Arrays.asList(c2), known);
+        known.add(ObjectId.parse(c3));
+        PathHistory.record(Arrays.asList(c3), known);
+        List<PathHistory.Change> versions =
+            PathHistory.versions("f.txt", after.blobShaID(), c2);
+        assertEquals(2, versions.size());
+        assertEquals(c2, versions.get(0).commit());
+        assertEquals(before.blobShaID(), versions.get(0).before());
+        assertNull(versions.get(1).before());
+        assertEquals(c3, PathHistory.versions("f.txt", after.blobShaID(),
+                                              c3).get(0).commit());
+        assertEquals(Arrays.asList(c1, c2, c1), Arrays.asList(
+            PathHistory.credit("f.txt", after.blobShaID(),
+                               after.blobInByte(), c2)));
+        for (File dir : dirs) {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void renamesTest() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i += 1) {
+            text.append("line ").append(i).append("\n");
+        }
+        String base = text.toString();
+        long[] a = Renames.sketch(new ByteArrayInputStream(base.getBytes()));
+        long[] b = Renames.sketch(new ByteArrayInputStream(
+            base.replace("line 7\n", "line seven\n").getBytes()));
+        long[] c = Renames.sketch(new ByteArrayInputStream(
+            base.replace("line", "other").getBytes()));
+        assertEquals(Renames.SKETCH_SIZE, a.length);
+        assertEquals(100, Renames.similarity(a, a));
+        assertTrue(Renames.similarity(a, b) >= 90);
+        assertTrue(Renames.similarity(a, c) < Renames.MIN_SCORE);
+        Blob old = new Blob(base.getBytes());
+        Blob edited =
+            new Blob(base.replace("line 7\n", "line seven\n").getBytes());
+        Blob unrelated = new Blob(base.replace("line", "x").getBytes());
+        new File(Utils.blobObjectDir()).mkdirs();
+        old.serializeBlob();
+        edited.serializeBlob();
+        unrelated.serializeBlob();
+        HashMap<String, String[]> changes = new HashMap<>();
+        changes.put("old.txt", new String[] {old.blobShaID(), null});
+        changes.put("same.txt", new String[] {unrelated.blobShaID(), null});
+        changes.put("new.txt", new String[] {null, edited.blobShaID()});
+        changes.put("moved.txt", new String[] {null, unrelated.blobShaID()});
+        changes.put("kept.txt", new String[] {old.blobShaID(),
+                                              edited.blobShaID()});
+        HashMap<String, String> expected = new HashMap<>();
+        expected.put("old.txt", "new.txt");
+        expected.put("same.txt", "moved.txt");
+        assertEquals(expected, Renames.detect(changes));
+        assertEquals(Renames.sketch(old.blobShaID()).length,
+                     Renames.SKETCH_SIZE);
+        for (String dir : new String[] { Utils.blobObjectDir(),
+                                         Utils.sketchDir() }) {
+            for (File f : new File(dir).listFiles()) {
+                f.delete();
+            }
+            new File(dir).delete();
+        }
+        new File(".gitlet").delete();
+    }
+
+    @Test
+    public void watcherTest() {
+        Main.init();
+        Utils.resetIgnoreRules();
+        Utils.writeContents(new File("tracked.txt"), "1\n".getBytes());
+        Utils.writeContents(new File(IgnoreRules.FILENAME),
+                            "build/\n".getBytes());
+        new File("build").mkdir();
+        Utils.writeContents(new File("build/old.txt"), "x".getBytes());
+        Main.add("tracked.txt");
+        Main.add(IgnoreRules.FILENAME);
+        Main.commit("tracked");
+        WorkingTreeWatcher watcher = new WorkingTreeWatcher();
+        try {
+            assertFalse(watchedStatus(watcher).contains(".txt"));
+            Utils.writeContents(new File("new.txt"), "n".getBytes());
+            assertTrue(awaitStatus(watcher, "new.txt\n", true));
+            Utils.writeContents(new File("tracked.txt"), "2\n".getBytes());
+            assertTrue(awaitStatus(watcher, "tracked.txt (modified)", true));
+            Utils.writeContents(new File(IgnoreRules.FILENAME),
+                                "new.txt\n".getBytes());
+            assertTrue(awaitStatus(watcher, "new.txt\n", false));
+            assertTrue(watchedStatus(watcher).contains("build/old.txt"));
+            Utils.writeContents(new File("build/late.txt"), "y".getBytes());
+            assertTrue(awaitStatus(watcher, "build/late.txt", true));
+        } finally {
+            watcher.close();
+            for (String name : new String[] { "tracked.txt", "new.txt",
+                                              IgnoreRules.FILENAME }) {
+                new File(name).delete();
+            }
+            deleteAll(new File("build"));
+            deleteAll(new File(".gitlet"));
+            Utils.resetIgnoreRules();
+        }
+    }
+
+    /** Return what WATCHER prints as the status of the repository in the
+     *  current directory. */
+    private static String watchedStatus(WorkingTreeWatcher watcher) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out));
+        try {
+            watcher.status(Main.getrepo());
+        } finally {
+            System.setOut(stdout);
+        }
+        return out.toString();
+    }
+
+    /** Ask WATCHER for the status until whether it contains TEXT is
+     *  PRESENT, giving the file-system events that bring that about up to
+     *  ten seconds to arrive, and return true if it did. */
+    private static boolean awaitStatus(WorkingTreeWatcher watcher,
+                                       String text, boolean present) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (watchedStatus(watcher).contains(text) != present) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException excp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Delete FILE, and everything below it if it is a directory. */
+    private static void deleteAll(File file) {
+        File[] below = file.listFiles();
+        if (below != null) {
+            for (File f : below) {
+                deleteAll(f);
+            }
+        }
+        file.delete();
+    }
+
     @Test
     public void initTest() {
         Main.init();
         File f = new File(".gitlet/commits/");
         File g = new File(".gitlet/blobs/");
         File h = new File(".gitlet/tree");
+        File trees = new File(".gitlet/trees/");
         File a = new File(".gitlet");
         assertTrue(f.exists());
         assertTrue(g.exists());
@@ -52,9 +622,14 @@ public class UnitTest {
         for (File t : g.listFiles()) {
             t.delete();
         }
+        for (File t : trees.listFiles()) {
+            t.delete();
+        }
         f.delete();
         g.delete();
+        trees.delete();
         h.delete();
+        new File(".gitlet/config").delete();
         a.delete();
     }
 
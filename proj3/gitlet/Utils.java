@@ -3,12 +3,13 @@ package gitlet;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
@@ -16,10 +17,12 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Formatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /** Assorted utilities.
@@ -30,13 +33,16 @@ class Utils {
     /** The length of a complete SHA-1 UID as a hexadecimal numeral. */
     static final int UID_LENGTH = 40;
 
-    /** Format for commit times. */
-    private static SimpleDateFormat _format =
-            new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
+    /** Format for commit times, one per thread, since a SimpleDateFormat
+     *  cannot be used by several threads at once. */
+    private static final ThreadLocal<SimpleDateFormat> _format =
+        ThreadLocal.withInitial(() ->
+            new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z"));
 
-    /** Return the format of time used. */
+    /** Return the format of time used, which belongs to the calling
+     *  thread. */
     static SimpleDateFormat formatt() {
-        return _format;
+        return _format.get();
     }
 
     /** File separator. */
@@ -80,8 +86,11 @@ class Utils {
     static Commit getRemoteCommit(String remoteName, String commitID) {
         CommitTree repo = Main.getrepo();
         String remotePath = repo.remote().get(remoteName);
+        GitletEvents.ObjectRead event = new GitletEvents.ObjectRead();
+        event.begin();
         File path = new File(remotePath + sep + "commits" + sep + commitID);
         Commit remoteCommit = Utils.readObject(path, Commit.class);
+        event.finish("commit", commitID, path);
         return remoteCommit;
     }
 
@@ -109,18 +118,134 @@ class Utils {
     }
 
     /** Get a blob from current repository and put it in remote repository
-     * storing area.
+     * storing area. Blobs the remote already has are not copied again.
      * @param remoteName name of remote
      * @param blobID id of blob
      * */
     static void addLocalBlobToRemote(String remoteName, String blobID) {
         CommitTree repo = Main.getrepo();
         String remotePath = repo.remote().get(remoteName);
-        Blob local = getBlob(blobID);
         File path = new File(remotePath + sep + "blobs" + sep + blobID);
+        if (path.exists()) {
+            return;
+        }
+        Blob local = getBlob(blobID);
         Utils.writeObject(path, local);
     }
 
+    /** Copy the stored blob BLOBID from repository directory FROM, which
+     * ends with ".gitlet", to repository directory TO, unless TO already
+     * has it. The chunks of a chunked blob that TO lacks are copied
+     * before the blob itself. A blob that the local repository only has a
+     * promise for is fetched from its promisor first. */
+    static void copyBlob(String from, String to, String blobID) {
+        GitletEvents.ObjectCopy event = new GitletEvents.ObjectCopy();
+        event.begin();
+        File target = new File(to + sep + "blobs" + sep + blobID);
+        if (target.exists()) {
+            event.finish("blob", blobID, from, to, 0);
+            return;
+        }
+        File source = new File(from + sep + "blobs" + sep + blobID);
+        if (!source.exists() && from.equals(LOCAL_REPO)) {
+            fetchPromisedBlob(blobID);
+        }
+        byte[] stored = readContents(source);
+        long copied = stored.length;
+        Blob blob = readObject(source, Blob.class);
+        for (String chunkID : blob.chunkIDs()) {
+            File chunk = new File(to + sep + "chunks" + sep + chunkID);
+            if (!chunk.exists()) {
+                chunk.getParentFile().mkdirs();
+                byte[] contents = readContents(
+                        new File(from + sep + "chunks" + sep + chunkID));
+                writeContents(chunk, contents);
+                copied += contents.length;
+            }
+        }
+        writeContents(target, stored);
+        event.finish("blob", blobID, from, to, copied);
+    }
+
+    /** Copy tree TREEID and all trees below it, with their blobs unless
+     * WITHBLOBS is false, from repository directory FROM to repository
+     * directory TO. A tree TO already has is skipped together with
+     * everything below it, since it is only ever stored after them. */
+    static void copyTree(String from, String to, String treeID,
+                         boolean withBlobs) {
+        File target = new File(to + sep + "trees" + sep + treeID);
+        if (target.exists()) {
+            return;
+        }
+        File source = new File(from + sep + "trees" + sep + treeID);
+        Tree tree = readObject(source, Tree.class);
+        if (withBlobs) {
+            for (String blobID : tree.files().values()) {
+                copyBlob(from, to, blobID);
+            }
+        }
+        for (String sub : tree.dirs().values()) {
+            copyTree(from, to, sub, withBlobs);
+        }
+        GitletEvents.ObjectCopy event = new GitletEvents.ObjectCopy();
+        event.begin();
+        target.getParentFile().mkdirs();
+        byte[] stored = readContents(source);
+        writeContents(target, stored);
+        event.finish("tree", treeID, from, to, stored.length);
+    }
+
+    /** Copy the stored blob BLOBID from any promisor remote of this
+     * repository into the local blob directory. Return true if some
+     * promisor had it. */
+    static boolean fetchPromisedBlob(String blobID) {
+        ArrayList<String> single = new ArrayList<>();
+        single.add(blobID);
+        return prefetchBlobs(single) == 1;
+    }
+
+    /** Copy every blob among BLOBIDS that is missing locally from the
+     * promisor remotes of this repository, reading the repository and
+     * its remote table once for the whole batch.
+     * @return number of blobs transferred */
+    static int prefetchBlobs(Collection<String> blobIDs) {
+        ArrayList<String> missing = new ArrayList<>();
+        for (String id : blobIDs) {
+            if (!new File(blobObjectDir() + id).exists()) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        if (_promisorPaths == null) {
+            CommitTree repo = Main.getrepo();
+            _promisorPaths = new ArrayList<>();
+            for (String name : repo.promisors()) {
+                String remotePath = repo.remote().get(name);
+                if (remotePath != null) {
+                    _promisorPaths.add(remotePath);
+                }
+            }
+        }
+        int fetched = 0;
+        for (String id : missing) {
+            for (String remotePath : _promisorPaths) {
+                File source = new File(remotePath + sep + "blobs" + sep + id);
+                if (source.isFile()) {
+                    copyBlob(remotePath, LOCAL_REPO, id);
+                    fetched += 1;
+                    break;
+                }
+            }
+        }
+        return fetched;
+    }
+
+    /** Paths of the promisor remotes of this repository, loaded on the
+     *  first blob that has to be fetched lazily. */
+    private static ArrayList<String> _promisorPaths;
+
     /** Get a commit from remote repository and put it in current repository
      * storing area.
      * @param remoteName name of remote
@@ -145,6 +270,9 @@ class Utils {
     }
 
 
+    /** Path of the local repository directory. */
+    static final String LOCAL_REPO = ".gitlet";
+
     /** Path of the commit object directory in string. */
     private static String commitObjectDir = ".gitlet" + sep + "commits" + sep;
 
@@ -154,6 +282,18 @@ class Utils {
     /** Path of the blob object directory in string. */
     private static String blobObjectDir = ".gitlet" + sep + "blobs" + sep;
 
+    /** Path of the tree object directory in string. */
+    private static String treeObjectDir = ".gitlet" + sep + "trees" + sep;
+
+    /** Path of the chunk directory in string. */
+    private static String chunkObjectDir = ".gitlet" + sep + "chunks" + sep;
+
+    /** Path of the directory of the history index in string. */
+    private static String historyDir = ".gitlet" + sep + "history" + sep;
+
+    /** Path of the directory of the sketches of blobs in string. */
+    private static String sketchDir = ".gitlet" + sep + "sketches" + sep;
+
     /** Path of the working directory in string. */
     private static String workingDir = System.getProperty("user.dir") + sep;
 
@@ -176,6 +316,32 @@ class Utils {
         return blobObjectDir;
     }
 
+    /** Path of the tree object directory in string.
+     * @return String*/
+    static String treeObjectDir() {
+        return treeObjectDir;
+    }
+
+    /** Path of the directory of the chunks of large blobs in string.
+     * @return String*/
+    static String chunkObjectDir() {
+        return chunkObjectDir;
+    }
+
+    /** Path of the directory of the index of the history of each path
+     * in string.
+     * @return String*/
+    static String historyDir() {
+        return historyDir;
+    }
+
+    /** Path of the directory of the cached similarity sketches of blobs
+     * in string.
+     * @return String*/
+    static String sketchDir() {
+        return sketchDir;
+    }
+
     /** Path of the working directory in string.
      * @return String*/
     static String workingDirectory() {
@@ -186,33 +352,166 @@ class Utils {
      * @return commit object
      * */
     static Commit getCommit(String commitID) {
+        GitletEvents.ObjectRead event = new GitletEvents.ObjectRead();
+        event.begin();
         File loc = new File(commitObjectDir() + commitID + "/");
-        return Utils.readObject(loc, Commit.class);
+        Commit result = Utils.readObject(loc, Commit.class);
+        event.finish("commit", commitID, loc);
+        return result;
     }
 
-    /** Get the blob object with ID BLOBID.
+    /** Get the blob object with ID BLOBID. A blob left behind by a
+     * partial fetch is copied from its promisor remote on first access.
      * @return Blob Object*/
     static Blob getBlob(String blobID) {
+        GitletEvents.ObjectRead event = new GitletEvents.ObjectRead();
+        event.begin();
         File loc = new File(blobObjectDir() + blobID + "/");
-        return Utils.readObject(loc, Blob.class);
+        if (!loc.exists()) {
+            fetchPromisedBlob(blobID);
+        }
+        Blob result = Utils.readObject(loc, Blob.class);
+        event.finish("blob", blobID, loc);
+        return result;
+    }
+
+    /** Get the tree object with ID TREEID.
+     * @return Tree Object*/
+    static Tree getTree(String treeID) {
+        Tree result;
+        synchronized (_treeCache) {
+            result = _treeCache.get(treeID);
+        }
+        if (result == null) {
+            result = _unstoredTrees.get(treeID);
+        }
+        if (result == null) {
+            GitletEvents.ObjectRead event = new GitletEvents.ObjectRead();
+            event.begin();
+            File loc = new File(treeObjectDir() + treeID);
+            result = readObject(loc, Tree.class);
+            synchronized (_treeCache) {
+                _treeCache.put(treeID, result);
+            }
+            event.finish("tree", treeID, loc);
+        }
+        return result;
     }
 
-    /** Return all filenames in the working directory.
+    /** Most trees kept in memory. */
+    private static final int TREE_CACHE_SIZE = 4096;
+
+    /** Recently read trees by ID. Trees never change once stored, so a
+     *  cached tree never goes stale. It is shared by all threads, which
+     *  lock it to use it. */
+    private static final LinkedHashMap<String, Tree> _treeCache =
+        new LinkedHashMap<String, Tree>(TREE_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tree> e) {
+                return size() > TREE_CACHE_SIZE;
+            }
+        };
+
+    /** Keep TREE, which was built in memory and not stored, for getTree
+     *  and Tree.store. */
+    static void keepTree(Tree tree) {
+        _unstoredTrees.putIfAbsent(tree.treeID(), tree);
+    }
+
+    /** Return the tree with ID TREEID if it was built in memory and not
+     *  stored, or else null. */
+    static Tree unstoredTree(String treeID) {
+        return _unstoredTrees.get(treeID);
+    }
+
+    /** Trees built in memory by ID, which unlike those of the tree cache
+     *  cannot be read again once dropped, and so are never evicted. */
+    private static final ConcurrentHashMap<String, Tree> _unstoredTrees =
+        new ConcurrentHashMap<>();
+
+    /** Return the paths, relative to the working directory and separated
+     * by Tree.SEP, of all files in the working directory and the
+     * directories below it. The .gitlet directory and directories of
+     * nested repositories are skipped.
      * @return ArrayList of String
      * */
     static ArrayList<String> wdFiles() {
-        File loc = new File(workingDirectory());
-        File[] allfiles = loc.listFiles();
         ArrayList<String> result = new ArrayList<>();
-        if (allfiles == null) {
-            return null;
+        Trace.begin(Trace.Phase.SCAN);
+        try {
+            collectFiles(new File(workingDirectory()), "", ignoreRules(),
+                         result);
+        } finally {
+            Trace.end();
+        }
+        return result;
+    }
+
+    /** Return the ignore rules of the working directory, compiled on
+     * first use. */
+    static IgnoreRules ignoreRules() {
+        if (_ignoreRules == null) {
+            _ignoreRules = IgnoreRules.load(new File(workingDirectory()));
+        }
+        return _ignoreRules;
+    }
+
+    /** Forget the compiled ignore rules, so that they are read again. */
+    static void resetIgnoreRules() {
+        _ignoreRules = null;
+    }
+
+    /** Compiled rules of the .gitletignore file. */
+    private static IgnoreRules _ignoreRules;
+
+    /** Add to RESULT the paths of all files below directory DIR, each
+     * prefixed with PREFIX, that RULES do not ignore. Names are matched
+     * against RULES before anything else is asked of the file system. */
+    private static void collectFiles(File dir, String prefix,
+                                     IgnoreRules rules,
+                                     ArrayList<String> result) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
         }
-        for (File f : allfiles) {
-            if (!f.isDirectory() & !f.getName().equals(".DS_Store")) {
-                result.add(f.getName());
+        for (String name : names) {
+            String path = prefix + name;
+            if (rules.ignored(path, name)) {
+                continue;
+            }
+            File f = new File(dir, name);
+            if (f.isDirectory()) {
+                if (!rules.ignoredDirectory(path, name)
+                        && !new File(f, ".gitlet").isDirectory()) {
+                    collectFiles(f, path + Tree.SEP, rules, result);
+                }
+            } else {
+                result.add(path);
             }
         }
-        return result;
+    }
+
+    /** Delete the file at PATH, relative to the working directory, and
+     * every directory on its path that it leaves empty. Refuses to
+     * delete anything unless the working directory holds a .gitlet
+     * directory. */
+    static void deleteFromWD(String path) {
+        File wd = new File(workingDirectory());
+        if (!new File(wd, ".gitlet").isDirectory()) {
+            throw new IllegalArgumentException("not .gitlet working directory");
+        }
+        File f = new File(wd, path);
+        if (f.isDirectory() || !f.delete()) {
+            return;
+        }
+        File parent = f.getParentFile();
+        while (parent != null && !parent.equals(wd)) {
+            String[] left = parent.list();
+            if (left == null || left.length > 0 || !parent.delete()) {
+                break;
+            }
+            parent = parent.getParentFile();
+        }
     }
 
     /** Return true if current file FILENAME version has different ID
@@ -240,25 +539,7 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
-        }
+        return digest(SHA1_DIGEST.get(), vals);
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -267,6 +548,178 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Returns the ID of the object whose content is the concatenation of
+     *  VALS, which may be any mixture of byte arrays and Strings, in the
+     *  object format of the current repository. */
+    static String hash(Object... vals) {
+        return digest(threadDigest(objectFormat()), vals);
+    }
+
+    /** Return the hex digest of the concatenation of VALS by MD, which is
+     *  reset first. */
+    private static String digest(MessageDigest md, Object... vals) {
+        md.reset();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /** Return a new digest of the algorithm ALGORITHM. */
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support "
+                                               + algorithm);
+        }
+    }
+
+    /** The SHA-1 digest of each thread. */
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST =
+        ThreadLocal.withInitial(() -> newDigest("SHA-1"));
+
+    /** The SHA-256 digest of each thread. */
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST =
+        ThreadLocal.withInitial(() -> newDigest("SHA-256"));
+
+    /** Return the digest of this thread for object format FORMAT. Only
+     *  for hashes finished before anything else is hashed. */
+    private static MessageDigest threadDigest(String format) {
+        return format.equals(SHA256) ? SHA256_DIGEST.get() : SHA1_DIGEST.get();
+    }
+
+    /** Return a new digest for object IDs of the current repository. */
+    static MessageDigest objectDigest() {
+        MessageDigest md = threadDigest(objectFormat());
+        try {
+            md = (MessageDigest) md.clone();
+        } catch (CloneNotSupportedException excp) {
+            md = newDigest(md.getAlgorithm());
+        }
+        md.reset();
+        return md;
+    }
+
+    /** Hexadecimal digits by value. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Return DIGEST as a hexadecimal numeral. */
+    static String toHex(byte[] digest) {
+        char[] result = new char[2 * digest.length];
+        for (int i = 0; i < digest.length; i += 1) {
+            result[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Return a digest for object IDs of the current repository already
+     *  fed the prefix that blob IDs are hashed with, to which blob
+     *  content can be streamed. */
+    static MessageDigest blobDigest() {
+        MessageDigest md = objectDigest();
+        md.update("BLOB".getBytes(StandardCharsets.UTF_8));
+        return md;
+    }
+
+    /** Feed MD the rest of IN, through a buffer, and return the number of
+     *  bytes fed. */
+    static long update(MessageDigest md, InputStream in) throws IOException {
+        byte[] buffer = new byte[HASH_BUFFER];
+        long total = 0;
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            md.update(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    /** Feed MD the rest of CHANNEL, through a direct buffer that the
+     *  file system can fill without copying, and return the number of
+     *  bytes fed. */
+    static long update(MessageDigest md, FileChannel channel)
+        throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER);
+        long total = 0;
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            total += buffer.remaining();
+            md.update(buffer);
+            buffer.clear();
+        }
+        return total;
+    }
+
+    /** Size of the buffers through which content is hashed. */
+    private static final int HASH_BUFFER = 64 * 1024;
+
+    /** Names of the object formats: the digests that name objects. */
+    static final String SHA1 = "sha1", SHA256 = "sha256";
+
+    /** Key of the object format in configuration files. */
+    static final String OBJECT_FORMAT = "objectFormat";
+
+    /** Object format of the repository in the working directory, or null
+     *  until it is read. */
+    private static String _objectFormat;
+
+    /** Return the object format of the repository in the working
+     *  directory. */
+    static String objectFormat() {
+        if (_objectFormat == null) {
+            _objectFormat = objectFormat(LOCAL_REPO);
+        }
+        return _objectFormat;
+    }
+
+    /** Return the object format of the repository in directory GITLET:
+     *  SHA1 unless its configuration says otherwise. */
+    static String objectFormat(String gitlet) {
+        File config = new File(gitlet, CONFIG);
+        if (config.isFile()) {
+            for (String line : readContentsAsString(config).split("\n")) {
+                int eq = line.indexOf('=');
+                if (eq > 0 && line.substring(0, eq).trim()
+                    .equals(OBJECT_FORMAT)) {
+                    String format = line.substring(eq + 1).trim();
+                    return format.equals(SHA256) ? SHA256 : SHA1;
+                }
+            }
+        }
+        return SHA1;
+    }
+
+    /** Make FORMAT the object format of the repository in the working
+     *  directory, recording it in its configuration. */
+    static void setObjectFormat(String format) {
+        _objectFormat = format;
+        writeContents(new File(LOCAL_REPO, CONFIG),
+                      OBJECT_FORMAT + " = " + format + "\n");
+    }
+
+    /** Forget the object format read, so that it is read again for the
+     *  next command. */
+    static void forgetObjectFormat() {
+        _objectFormat = null;
+    }
+
+    /** Return the length of a full object ID in the current repository,
+     *  in hexadecimal digits. */
+    static int idLength() {
+        return objectFormat().equals(SHA256) ? 2 * ObjectId.WIDE_LENGTH
+            : UID_LENGTH;
+    }
+
+    /** Name of the configuration file in a repository directory. */
+    static final String CONFIG = "config";
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -301,10 +754,15 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
+        Trace.begin(Trace.Phase.READ);
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] result = Files.readAllBytes(file.toPath());
+            Trace.bytesRead(result.length);
+            return result;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end();
         }
     }
 
@@ -322,6 +780,7 @@ class Utils {
      *  either a String or a byte array.  Throws IllegalArgumentException
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
+        Trace.begin(Trace.Phase.WRITE);
         try {
             if (file.isDirectory()) {
                 throw
@@ -330,15 +789,20 @@ class Utils {
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
             for (Object obj : contents) {
+                byte[] bytes;
                 if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
+                    bytes = (byte[]) obj;
                 } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                    bytes = ((String) obj).getBytes(StandardCharsets.UTF_8);
                 }
+                str.write(bytes);
+                Trace.bytesWritten(bytes.length);
             }
             str.close();
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end();
         }
     }
 
@@ -346,21 +810,33 @@ class Utils {
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
+        Trace.begin(Trace.Phase.READ);
         try {
-            ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream(file));
-            T result = expectedClass.cast(in.readObject());
-            in.close();
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            T result = Codec.decode(bytes, expectedClass);
+            Trace.objectRead();
+            Trace.bytesRead(bytes.length);
             return result;
-        } catch (IOException | ClassCastException
-                 | ClassNotFoundException excp) {
+        } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end();
         }
     }
 
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        GitletEvents.ObjectWrite event = new GitletEvents.ObjectWrite();
+        event.begin();
+        Trace.begin(Trace.Phase.WRITE);
+        try {
+            byte[] bytes = serialize(obj);
+            writeContents(file, bytes);
+            Trace.objectWritten();
+            event.finish(obj, file, bytes.length);
+        } finally {
+            Trace.end();
+        }
     }
 
     /* DIRECTORIES */
@@ -413,8 +889,13 @@ class Utils {
 
     /* SERIALIZATION UTILITIES */
 
-    /** Returns a byte array containing the serialized contents of OBJ. */
+    /** Returns a byte array containing the serialized contents of OBJ.
+     *  Commits, blobs, trees and repositories are written in the binary
+     *  encoding of Codec; anything else by Java serialization. */
     static byte[] serialize(Serializable obj) {
+        if (Codec.encodes(obj)) {
+            return Codec.encode(obj);
+        }
         try {
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             ObjectOutputStream objectStream = new ObjectOutputStream(stream);
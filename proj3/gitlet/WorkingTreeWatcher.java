@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** Status of the working directory kept up to date from file-system
+ *  events, for the long-running watch command. Between two requests for
+ *  status, the paths named by events are collected in a dirty set, and
+ *  only those paths, plus the paths whose head or stage entries changed,
+ *  are examined again. Events that were lost, or that cannot be narrowed
+ *  to single files, fall back to a full scan.
+ *  @author Zixian Zang
+ */
+class WorkingTreeWatcher {
+
+    /** A watcher of the working directory and all directories below it
+     *  that the ignore rules do not hide. */
+    WorkingTreeWatcher() {
+        _root = new File(Utils.workingDirectory());
+        try {
+            _service = FileSystems.getDefault().newWatchService();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot watch the working directory.");
+        }
+        rescan();
+    }
+
+    /** Print the status of REPO, examining only the paths that changed
+     *  since the last time. */
+    void status(CommitTree repo) {
+        drainEvents();
+        Commit head = Utils.getCommit(repo.curHeadCommit());
+        if (_fullScan) {
+            if (_reregister) {
+                rescan();
+            }
+            _fullScan = false;
+            _modified.clear();
+            for (String entry : repo.modifiedStatus()) {
+                _modified.put(pathOf(entry), entry);
+            }
+            _untracked = repo.untrackStatus();
+        } else {
+            HashSet<String> paths = new HashSet<>(_dirty);
+            addChangedEntries(repo, head, paths);
+            HashSet<String> present = new HashSet<>();
+            HashSet<String> visible = new HashSet<>();
+            IgnoreRules rules = Utils.ignoreRules();
+            for (String path : paths) {
+                _modified.remove(path);
+                _untracked.remove(path);
+                if (new File(_root, path).isFile()) {
+                    present.add(path);
+                    if (!rules.ignoredPath(path)) {
+                        visible.add(path);
+                    }
+                }
+            }
+            for (String entry : repo.modifiedStatus(head, paths, present)) {
+                _modified.put(pathOf(entry), entry);
+            }
+            _untracked.addAll(repo.untrackStatus(head, visible));
+        }
+        _dirty.clear();
+        _headID = head.commitID();
+        _headTree = head.tree();
+        _added = new HashMap<>(repo.addArea());
+        _removed = new HashSet<>(repo.removeArea());
+        repo.status(_modified.values(), _untracked);
+    }
+
+    /** Stop watching. */
+    void close() {
+        try {
+            _service.close();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Add to PATHS every path whose entry in the head commit HEAD or in
+     *  the stage of REPO differs from the last snapshot. */
+    private void addChangedEntries(CommitTree repo, Commit head,
+                                   HashSet<String> paths) {
+        if (!head.commitID().equals(_headID)) {
+            HashMap<String, String[]> changes = new HashMap<>();
+            Tree.diff(_headTree, head.tree(), "", changes);
+            paths.addAll(changes.keySet());
+        }
+        HashMap<String, String> added = repo.addArea();
+        for (Map.Entry<String, String> e : added.entrySet()) {
+            if (!e.getValue().equals(_added.get(e.getKey()))) {
+                paths.add(e.getKey());
+            }
+        }
+        for (String path : _added.keySet()) {
+            if (!added.containsKey(path)) {
+                paths.add(path);
+            }
+        }
+        HashSet<String> removed = repo.removeArea();
+        for (String path : removed) {
+            if (!_removed.contains(path)) {
+                paths.add(path);
+            }
+        }
+        for (String path : _removed) {
+            if (!removed.contains(path)) {
+                paths.add(path);
+            }
+        }
+    }
+
+    /** Move the paths named by all pending events into the dirty set,
+     *  registering new directories as they appear. A change to the ignore
+     *  rules or the deletion of a watched directory changes which
+     *  directories must be watched, so all are registered again. */
+    private void drainEvents() {
+        WatchKey key;
+        while ((key = _service.poll()) != null) {
+            String prefix = _keys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || prefix == null) {
+                    _fullScan = _reregister = true;
+                    continue;
+                }
+                String name = ((Path) event.context()).toString();
+                String path = prefix + name;
+                if (path.equals(".gitlet")) {
+                    continue;
+                } else if (path.equals(IgnoreRules.FILENAME)) {
+                    Utils.resetIgnoreRules();
+                    _fullScan = _reregister = true;
+                } else if (event.kind() == ENTRY_DELETE
+                           && _dirs.contains(path)) {
+                    _fullScan = _reregister = true;
+                } else if (event.kind() == ENTRY_CREATE
+                           && new File(_root, path).isDirectory()) {
+                    register(new File(_root, path), path + Tree.SEP, true);
+                } else {
+                    _dirty.add(path);
+                }
+            }
+            if (!key.reset()) {
+                _keys.remove(key);
+            }
+        }
+    }
+
+    /** Drop all registrations and register the whole working directory
+     *  again, ready for a full scan. */
+    private void rescan() {
+        for (WatchKey key : _keys.keySet()) {
+            key.cancel();
+        }
+        _keys.clear();
+        _dirs.clear();
+        _dirty.clear();
+        _reregister = false;
+        register(_root, "", false);
+        _fullScan = true;
+    }
+
+    /** Watch directory DIR, whose path relative to the working directory
+     *  is PREFIX, and the directories below it. If MARKFILES, the files
+     *  already inside are marked dirty, since they may have been created
+     *  before DIR was watched. */
+    private void register(File dir, String prefix, boolean markFiles) {
+        try {
+            WatchKey key = dir.toPath().register(_service, ENTRY_CREATE,
+                                                 ENTRY_DELETE, ENTRY_MODIFY);
+            _keys.put(key, prefix);
+        } catch (IOException excp) {
+            _fullScan = _reregister = true;
+            return;
+        }
+        if (!prefix.isEmpty()) {
+            _dirs.add(prefix.substring(0, prefix.length() - 1));
+        }
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        IgnoreRules rules = Utils.ignoreRules();
+        for (String name : names) {
+            String path = prefix + name;
+            if (rules.ignored(path, name)) {
+                continue;
+            }
+            File f = new File(dir, name);
+            if (f.isDirectory()) {
+                if (!rules.ignoredDirectory(path, name)
+                    && !new File(f, ".gitlet").isDirectory()) {
+                    register(f, path + Tree.SEP, markFiles);
+                }
+            } else if (markFiles) {
+                _dirty.add(path);
+            }
+        }
+    }
+
+    /** Return the path that status ENTRY, such as "a.txt (modified)",
+     *  is about. */
+    private static String pathOf(String entry) {
+        return entry.substring(0, entry.lastIndexOf(" ("));
+    }
+
+    /** The working directory. */
+    private final File _root;
+
+    /** Source of file-system events. */
+    private final WatchService _service;
+
+    /** Path prefix, relative to the working directory, of the directory
+     *  of each registration. */
+    private final HashMap<WatchKey, String> _keys = new HashMap<>();
+
+    /** Paths of the watched directories below the working directory. */
+    private final HashSet<String> _dirs = new HashSet<>();
+
+    /** Paths named by events since the last status. */
+    private final HashSet<String> _dirty = new HashSet<>();
+
+    /** True if the next status must scan the whole working directory. */
+    private boolean _fullScan;
+
+    /** True if events may have been missed for some directories, which
+     *  must then be registered again before a full scan. */
+    private boolean _reregister;
+
+    /** Entries of the modifications section by path, as of the last
+     *  status. */
+    private final HashMap<String, String> _modified = new HashMap<>();
+
+    /** Untracked files as of the last status. */
+    private HashSet<String> _untracked = new HashSet<>();
+
+    /** Head commit and its tree as of the last status. */
+    private String _headID, _headTree;
+
+    /** Staged additions as of the last status. */
+    private HashMap<String, String> _added = new HashMap<>();
+
+    /** Staged removals as of the last status. */
+    private HashSet<String> _removed = new HashSet<>();
+}